@@ -8,13 +8,20 @@ package com.github.roddunne.mandelbrot;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.util.Log;
 
 
 /**
  * Activity specified in the Manifest that will be started from the launcher
+ *
+ * To offload the calculations to a RenderServer, start it with the server's address, e.g.
+ * adb shell am start -n com.github.roddunne.mandelbrot/.MainActivity --es render_server 192.168.1.10:47474
  */
 public class MainActivity extends Activity
 {
+    // The optional intent extra holding the render server host, and optionally port, as host:port
+    private final static String renderServerExtra_ = "render_server";
+
     /**
      * Lifecycle entry point.
      *
@@ -25,5 +32,25 @@ public class MainActivity extends Activity
     {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+
+        final String renderServer = getIntent().getStringExtra(renderServerExtra_);
+        if (renderServer != null && !renderServer.isEmpty())
+        {
+            final int separator = renderServer.lastIndexOf(':');
+            final String host = separator < 0 ? renderServer : renderServer.substring(0, separator);
+            int port = TileProtocol.DEFAULT_PORT;
+            if (separator >= 0)
+            {
+                try
+                {
+                    port = Integer.parseInt(renderServer.substring(separator + 1));
+                }
+                catch (NumberFormatException e)
+                {
+                    Log.w("MainActivity", "Invalid render server port in " + renderServer + ", using " + port);
+                }
+            }
+            ((MandelbrotView) findViewById(R.id.view)).setRenderServer(host, port);
+        }
     }
 }
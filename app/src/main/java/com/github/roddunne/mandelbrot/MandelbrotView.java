@@ -11,13 +11,22 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Debug;
 import android.util.AttributeSet;
+import android.util.Log;
+import android.view.KeyEvent;
 import android.view.MotionEvent;
 import android.view.View;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -27,7 +36,8 @@ import java.util.concurrent.ConcurrentLinkedDeque;
  * resolution of 1920x1080.  This matches the default resolution of the Amazon FireStick 2 on my TV.
  *
  * The starting image will display the "usual" x-axis bulb and cardioid entire set.  The colorization uses the
- * simple escape time count approach and does not smooth the colors.
+ * normalized iteration count (smooth coloring) approach, driven entirely by lookup tables so that no per pixel
+ * logarithms are required.
  *
  * The user can then zoom in, by a factor of two, by clicking the primary button of an attached BlueTooth mouse on the
  * FireStick.
@@ -35,11 +45,27 @@ import java.util.concurrent.ConcurrentLinkedDeque;
  */
 public class MandelbrotView extends View
 {
+    private final static String TAG = "MandelbrotView";
+
     /******************************************************************************************************************/
     // Magic numbers
 
     // Number of colors in the palette for iteration to color mapping
     private final static int paletteSize_ = 256;
+    // Number of interpolated lookup table entries per palette color, i.e. the fractional resolution of smooth coloring
+    private final static int paletteSubdivisions_ = 16;
+    // Number of entries in the table mapping the final |z|^2 to the fractional part of the normalized iteration count
+    private final static int smoothingTableSize_ = 4096;
+    // The largest final |z|^2 in the smoothing table.  A point escapes with |z|^2 up to (2 + |c|)^2, which for any c
+    // on the starting view (|c| < 4.4) is below this, so only points well off screen would be clamped.
+    private final static double smoothingMaximumMagnitudeSquared_ = 64.0;
+    // The palette lookup table has 1 << paletteIndexBits_ entries, i.e. paletteSize_ * paletteSubdivisions_
+    private final static int paletteIndexBits_ = 12;
+    private final static int paletteIndexMask_ = (1 << paletteIndexBits_) - 1;
+    // Number of columns indexed together, so the reads down each column of the iteration count array stay in cache
+    private final static int colorizeBlockWidth_ = 16;
+    // Number of palette lookup table entries the palette offset advances per animation frame when color cycling
+    private final static int colorCycleStep_ = paletteSubdivisions_ / 4;
 
     // Assume only default TV resolution for now.
     private final static int screenHeight_ = 1080;
@@ -51,12 +77,74 @@ public class MandelbrotView extends View
     private final static double startingMinimumImaginaryRange_ = -1.8;
     private final static double startingMaximumImaginaryRange_ = 1.8;
 
+    // Tables of starting points for calculating subsets of the Mandelbrot set, for each scale, in calculation order
+    private final static int[] level8CreationStartingPairs_ = { 0,0 };
+    private final static int[] level4CreationStartingPairs_ = { 4,0,  4,4,  0,4};
+    private final static int[] halfScaleCreationStartingPairs_ = { 2,0,  6,0,  0,2,  2,2,  4,2,  6,2,  2,4,  6,4,  0,6,  2,6,  4,6,  6,6 };
+    private final static int[] fullScaleCreationStartingPairs_ = { 1,1, 3,1, 5,1, 7,1, 1,3, 3,3, 5,3, 7,3, 1,5, 3,5, 5,5, 7,5, 1,7, 3,7, 5,7, 7,7 };
+    private final static int[] fullScaleInterpolatedCreationStartingPairs_ = { 1,0, 3,0, 5,0, 7,0, 0,1, 2,1, 4,1, 6,1, 1,2, 3,2, 5,2, 7,2, 0,3, 2,3, 4,3, 6,3,
+            1,4, 3,4, 5,4, 7,4, 0,5, 2,5, 4,5, 6,5, 1,6, 3,6, 5,6, 7,6, 0,7, 2,7, 4,7, 6,7};
+
     /******************************************************************************************************************/
     // Algorithm tuning
 
     // Configurable variables for the algorithm iteration
-    private final static int maximumTestIterations_ = 512;
-    private final static double escapeValueSquared_ = 4.0;
+    private final static int maximumTestIterations_ = 16384;
+    private final static double escapeValueSquared_ = EscapeKernel.ESCAPE_VALUE_SQUARED;
+
+    // The iteration budget for the first pass of each level, unresolved points are deepened afterwards
+    private final static int initialTestIterations_ = 128;
+    // Stop deepening once a pass, at double the previous budget, lets fewer than this fraction of the unresolved points escape
+    private final static double minimumNewlyEscapedFraction_ = 0.002;
+    // The iteration count of a point that has neither escaped, nor been proven inside the set (-1), within the budget so far
+    private final static int unresolvedIterationCount_ = -2;
+    // The number of points each container of unresolved points holds before growing, and is trimmed back to per level
+    private final static int unresolvedPointsCapacity_ = 1 << 16;
+
+    // Maximum number of speculatively rendered next zoom levels kept
+    private final static int speculativeCacheSize_ = 4;
+    // A click within this many pixels of a speculatively rendered zoom target uses it, re-centered on that target
+    private final static float speculativeHitTolerance_ = 8.0f;
+    // The size, in pixels, of the blocks scored for boundary detail when choosing speculative zoom targets
+    private final static int boundaryBlockSize_ = 120;
+    // The number of unresolved points each speculatively rendered level holds before growing, at most a quarter scale
+    private final static int speculativeUnresolvedPointsCapacity_ = 1 << 10;
+
+    // The time a tile of rows should take to calculate, long enough to amortize claiming it, short enough to stop on zoom
+    private final static long targetTileNanos_ = 20000000L;
+    // The maximum number of rows in a tile, a subset has 135 rows
+    private final static int maximumTileRows_ = 16;
+    // A viewport whose conjugate lands within this fraction of a pixel of whole rows is mirrored about the real axis
+    private final static double mirrorTolerance_ = 1e-6;
+    // Passes with fewer iterations than this are too short to give a reliable throughput figure
+    private final static long minimumIterationsForThroughput_ = 1000000L;
+    // A throughput below this fraction of the best seen for the same number of workers counts as a slow pass
+    private final static double throttleRatio_ = 0.7;
+    // This many slow passes in a row is the signature of thermal throttling, so drop a worker
+    private final static int throttlePassCount_ = 3;
+    // How long to wait after changing the number of workers, before probing with an extra worker again
+    private final static long workerRecoveryNanos_ = 15000000000L;
+    // The best throughput seen decays by this factor each pass, so it follows the device rather than its best ever pass
+    private final static double peakThroughputDecay_ = 0.98;
+    // The kinds of pass.  Each has its own throughput baseline, as their iterations per nanosecond differ.
+    // Colorize passes perform no iterations, so they never count towards the throughput.
+    private final static int subsetPass_ = 0;
+    private final static int interpolatedSubsetPass_ = 1;
+    private final static int deepeningPass_ = 2;
+    private final static int colorizePass_ = 3;
+    private final static int passTypes_ = 4;
+    // The number of unresolved points in each item of a deepening pass, small enough to balance across the workers
+    private final static int deepeningItemPoints_ = 512;
+
+    // The iteration budget for the first pass on a render server, which is fast enough to go deeper before deepening
+    private final static int remoteTestIterations_ = 4096;
+    // The number of rows in each tile requested from a render server
+    private final static int remoteTileRows_ = 16;
+    // How long to wait to connect to, or for the next tile from, a render server before calculating locally
+    private final static int remoteConnectTimeoutMillis_ = 500;
+    private final static int remoteReadTimeoutMillis_ = 5000;
+    // How long to calculate locally, after a render server failed, before trying it again
+    private final static long remoteRetryNanos_ = 30000000000L;
 
     /******************************************************************************************************************/
     // Run-time algorithm data
@@ -70,34 +158,94 @@ public class MandelbrotView extends View
     // Drawing data
 
     // Color to represent being inside the set
-    private final Paint paintBlack_ = new Paint();
-    // Colors used to represent the iterations required to escape the set
-    private final List<Paint> paintArray_ = new ArrayList<Paint>(paletteSize_);
+    private final static int insideColor_ = Color.BLACK;
+    // High resolution ARGB colors used to represent the (smoothed) iterations required to escape the set.
+    // Replaced wholesale, never modified in place, so a render in progress always sees a consistent palette.
+    private volatile int[] paletteLookupTable_ = new int[paletteSize_ * paletteSubdivisions_];
+    // Maps the final |z|^2 of an escaped point onto the fractional part of its normalized iteration count
+    private final float[] smoothingTable_ = new float[smoothingTableSize_ + 1];
+    // Rotates the palette lookup table, in entries, animated when color cycling
+    private volatile int paletteOffset_ = 0;
+    // Escaped points that took this many iterations or more are displayed as inside the set
+    private volatile int displayIterationClamp_ = Integer.MAX_VALUE;
+    // Whether the palette offset is currently being animated
+    private volatile boolean colorCycling_ = false;
+    // Advances the palette offset and re-colors once per display frame, until color cycling is stopped.
+    // A frame is skipped while the job thread is coloring, the next frame shows the offset reached by then.
+    private final Runnable colorCycleFrame_ = new Runnable()
+    {
+        public void run()
+        {
+            if (colorCycling_)
+            {
+                paletteOffset_ = (paletteOffset_ + colorCycleStep_) % paletteLookupTable_.length;
+                tryRecolor();
+                postOnAnimation(this);
+            }
+        }
+    };
+    // Retries a re-color that found the job thread coloring, on the next display frame
+    private final Runnable recolorFrame_ = new Runnable()
+    {
+        public void run()
+        {
+            recolor();
+        }
+    };
 
-    // The actual bitmap that gets drawn onto the screen
-    private Bitmap renderBitmap_ = Bitmap.createBitmap(screenWidth_, screenHeight_, Bitmap.Config.ARGB_8888);
-    // The paint used to draw onto the onscreen canvas, passed to us in onDraw
-    private final Paint canvasPaint = new Paint(Paint.DITHER_FLAG);
+    // The stage that maps the iteration count array into the bitmaps, created once the palette is set up
+    private ColorizeStage colorizeStage_;
+
+    // The paint used to draw onto the onscreen canvas, passed to us in onDraw.  Filtered, as the smaller bitmaps are scaled up.
+    private final Paint canvasPaint = new Paint(Paint.DITHER_FLAG | Paint.FILTER_BITMAP_FLAG);
+    // The onscreen area that the latest bitmap is scaled into
+    private final Rect screenRect_ = new Rect(0, 0, screenWidth_, screenHeight_);
 
     // Bitmaps at various scales, used to improve user experience by simple progressive rendering  and displaying (interlacing)
-    private final Bitmap bitmapFull_ = Bitmap.createBitmap(screenWidth_, screenHeight_, Bitmap.Config.ARGB_8888);
-    private final Bitmap bitmapHalf_ = Bitmap.createBitmap(screenWidth_ / 2, screenHeight_ / 2, Bitmap.Config.ARGB_8888);
-    private final Bitmap bitmapQuarter_ = Bitmap.createBitmap(screenWidth_ / 4, screenHeight_ / 4, Bitmap.Config.ARGB_8888);
-    private final Bitmap bitmapEighth_ = Bitmap.createBitmap(screenWidth_ / 8, screenHeight_ / 8, Bitmap.Config.ARGB_8888);
+    // A pair of each, so one can be colored off screen while the other is displayed, then swapped in, without tearing.
+    private final Bitmap[] bitmapPairFull_ = createBitmapPair(1);
+    private final Bitmap[] bitmapPairHalf_ = createBitmapPair(2);
+    private final Bitmap[] bitmapPairQuarter_ = createBitmapPair(4);
+    private final Bitmap[] bitmapPairEighth_ = createBitmapPair(8);
+
+    // The actual bitmap that gets drawn onto the screen, i.e. the latest rendered of the bitmaps above
+    private volatile Bitmap renderBitmap_ = bitmapPairFull_[0];
 
-    // A container of the iteration counts calculated for the current "zoom" level
+    // A container of the iteration counts calculated for the current "zoom" level.  -1 for points proven inside the set,
+    // unresolvedIterationCount_ for points that have not escaped within the budget so far, and are waiting to be deepened.
     private final int[][] iterationArray_ = new int[screenWidth_][screenHeight_];
+    // The position of each subset, by starting x then y offset, in the calculation order of a level
+    private final int[][] subsetCalculationOrder_ = new int[8][8];
+    // A container of the final |z|^2 values of escaped points, used for smooth coloring of the current "zoom" level
+    private final float[][] magnitudeArray_ = new float[screenWidth_][screenHeight_];
+    // The points of the current "zoom" level that have not escaped, nor been proven inside the set, within the budget so far.
+    // One container per calculation worker, so they can be added to and deepened in parallel.
+    private UnresolvedPoints[] unresolvedPoints_;
+    // The scale factor of the latest bitmap rendered, so it can be re-colored without recalculating the level
+    private volatile int lastRenderedFactor_ = 8;
 
     /******************************************************************************************************************/
     // Job, threading and state run time data
 
     // The current zoom level of the Mandelbrot set, incremented by the user mouse clicks
-    private int currentZoomLevel_ = 0;
+    private volatile int currentZoomLevel_ = 0;
     // The latest zoom level that we have actually drawn on screen, used to "catch up" when the user clicks rapidly in succession.
-    private int actualRenderedZoomLevel_ = 0;
+    private volatile int actualRenderedZoomLevel_ = 0;
 
     // A list of level creation and rendering jobs to perform in FIFO order
     private final ConcurrentLinkedDeque<CreationJob> creationJobs_ = new ConcurrentLinkedDeque<CreationJob>();
+    // The thread that runs the jobs, parked while there is nothing to do
+    private Thread jobThread_;
+    // Runs the calculations of each job in parallel
+    private RenderScheduler renderScheduler_;
+    // Calculates each subset of a level, on the device unless a render server has been set
+    private volatile TileSource tileSource_ = new LocalTileSource();
+
+    // Renders likely next zoom levels while there are no jobs
+    private final SpeculativeRenderer speculativeRenderer_ = new SpeculativeRenderer();
+    // The latest mouse cursor position, used as the most likely next zoom target
+    private volatile float hoverX_ = -1.0f;
+    private volatile float hoverY_ = -1.0f;
 
 
     /**
@@ -142,21 +290,56 @@ public class MandelbrotView extends View
     /**
      * Common initializer
      *
-     * Set up the palette.
+     * Set up the palette and smoothing lookup tables, and the colorize stage.
      */
     private void initialize()
     {
-        // TODO - Use this to seed the number of worker threads in a ThreadPoolExecutor
         int numberOfProcessors = Runtime.getRuntime().availableProcessors();
 
-        paintBlack_.setColor(Color.BLACK);
+        // Allow the FireStick remote to reach onKeyDown
+        setFocusable(true);
 
+        // Default palette is the original hue sweep, but with each hue subdivided for smooth coloring.
         // Even though not hard-coded, assumes palette is 256 colors.
-        for (int n = 0; n < paletteSize_; ++n)
+        final int[] defaultLookupTable = new int[paletteSize_ * paletteSubdivisions_];
+        for (int n = 0; n < defaultLookupTable.length; ++n)
+        {
+            final float hue = (float) n / paletteSubdivisions_;
+            defaultLookupTable[n] = Color.HSVToColor(new float[]{hue % 256, 1.0f, 1.0f});
+        }
+        paletteLookupTable_ = defaultLookupTable;
+
+        // The normalized iteration count is n + 1 - log2(ln|z| / ln(escape)).  An escaped point always has a final |z|^2
+        // between the escape value and (2 + |c|)^2, so tabulate the fractional part over that range once here, rather
+        // than taking two logarithms per pixel when rendering.
+        // NOTE the fraction is signed, it falls below zero once |z|^2 passes the square of the escape value.  Clamping
+        // it at zero would leave bands in the outer region, where the points escape the furthest.
+        final double logEscape = Math.log(escapeValueSquared_);
+        for (int n = 0; n <= smoothingTableSize_; ++n)
+        {
+            final double magnitudeSquared = escapeValueSquared_ + n * (smoothingMaximumMagnitudeSquared_ - escapeValueSquared_) / smoothingTableSize_;
+            final double fraction = Math.log(Math.log(magnitudeSquared) / logEscape) / Math.log(2.0);
+            smoothingTable_[n] = (float) (1.0 - fraction);
+        }
+
+        colorizeStage_ = new ColorizeStage(numberOfProcessors);
+
+        // Used to tell which of a pair of rows mirrored about the real axis is calculated first
+        int order = 0;
+        for (int[] pairs : new int[][]{ level8CreationStartingPairs_, level4CreationStartingPairs_, halfScaleCreationStartingPairs_,
+                fullScaleCreationStartingPairs_, fullScaleInterpolatedCreationStartingPairs_ })
+        {
+            for (int index = 0; index < pairs.length; index += 2)
+            {
+                subsetCalculationOrder_[pairs[index]][pairs[index + 1]] = order++;
+            }
+        }
+
+        renderScheduler_ = new RenderScheduler(numberOfProcessors);
+        unresolvedPoints_ = new UnresolvedPoints[numberOfProcessors];
+        for (int n = 0; n < numberOfProcessors; ++n)
         {
-            Paint paint = new Paint();
-            paint.setColor(Color.HSVToColor(new float[]{n % 256, 255, 255}));
-            paintArray_.add(paint);
+            unresolvedPoints_[n] = new UnresolvedPoints();
         }
 
         // Make the grid something nonsensical, so the interpolation algorithm does not match erroneously on first run.
@@ -168,36 +351,47 @@ public class MandelbrotView extends View
             }
         }
 
-        // Start "task manager" busy-wait
+        // Start "task manager"
         runJobs();
 
         // Create the first level
-        updateZoomLevel();
+        updateZoomLevel(null);
     }
 
 
     /**
-     * Uses a busy-wait synchronized queue of job objects to execute off the UI thread in order to
+     * @param factor The progressive rendering/"interlace"/scaling factor.
+     * @return Two bitmaps of the screen size divided by the factor.
+     */
+    private static Bitmap[] createBitmapPair(int factor)
+    {
+        return new Bitmap[]{ Bitmap.createBitmap(screenWidth_ / factor, screenHeight_ / factor, Bitmap.Config.ARGB_8888),
+                Bitmap.createBitmap(screenWidth_ / factor, screenHeight_ / factor, Bitmap.Config.ARGB_8888) };
+    }
+
+
+    /**
+     * Uses a synchronized queue of job objects to execute off the UI thread in order to
      * calculate each level of zoom into the Mandelbrot set, and then render that new level into various
      * scaled off screen bitmaps.  These bitmaps are then copied on screen during on draw.
      *
-     * TODO - switch all this to use Androids built in ThreadPoolExecutor with FutureTasks for callbacks.
-     * The FireStick has 4 cores.  One last optimization would be to use more of them and to allow the OS
-     * to manage the blocking waits.
+     * The calculations of each job are spread across all the cores by the render scheduler.  When there are no jobs,
+     * the thread is used for speculative rendering, and once there is nothing left to speculate on, it parks until
+     * a job is submitted or the mouse cursor moves.  It used to busy-wait, which burnt power and heated the FireStick.
      */
     private void runJobs()
     {
-        new Thread(new Runnable()
+        jobThread_ = new Thread(new Runnable()
         {
             public void run()
             {
-                // Enter endless busy-wait
+                // Enter endless job loop
                 while (true)
                 {
                     // If we have a job, pull it and run it
-                    if ( ! creationJobs_.isEmpty())
+                    CreationJob nextJob = creationJobs_.pollFirst();
+                    if (nextJob != null)
                     {
-                        CreationJob nextJob = creationJobs_.removeFirst();
                         // Only calculate if the user has not clicked the mouse since job creation
                         if (nextJob.zoomLevelAtJobCreation_ >= currentZoomLevel_)
                         {
@@ -205,21 +399,37 @@ public class MandelbrotView extends View
                             // Only render if the user has not clicked the mouse since job creation
                             if (nextJob.zoomLevelAtJobCreation_ >= currentZoomLevel_)
                             {
-                                actualRenderedZoomLevel_ = nextJob.zoomLevelAtJobCreation_;
                                 nextJob.doPostJob();
                             }
                             // Or render if we haven't rendered this level
                             else if (nextJob.zoomLevelAtJobCreation_ > actualRenderedZoomLevel_)
                             {
-                                actualRenderedZoomLevel_ = nextJob.zoomLevelAtJobCreation_;
                                 nextJob.doPostJob();
                             }
                         }
                     }
+                    // Otherwise use the idle time to guess at the next zoom level, or sleep until there is work
+                    else if ( ! speculativeRenderer_.doIdleStep())
+                    {
+                        LockSupport.park(this);
+                    }
                 }
 
             }
-        }).start();
+        }, "jobs");
+        jobThread_.start();
+    }
+
+
+    /**
+     * Queue a job and wake up the job thread.
+     *
+     * @param job The job to run after those already queued.
+     */
+    private void submitJob(CreationJob job)
+    {
+        creationJobs_.addLast(job);
+        LockSupport.unpark(jobThread_);
     }
 
 
@@ -232,10 +442,13 @@ public class MandelbrotView extends View
      * But the class hierarchy is unnecessary, a single level could be parameterized sufficiently
      * to reduce all this code, without it being unreadable.  Even taking into account the special
      * behaviour of the full scale calculation i.e. interpolating if possible.
+     *
+     * @param speculativeHit The speculatively rendered eighth and quarter scale of this level, or null if there is none.
      */
-    private void updateZoomLevel()
+    private void updateZoomLevel(SpeculativeResult speculativeHit)
     {
         // Erase the iteration count container, so interpolations are not erroneously based on previous level.
+        final long startCpuNanos = Debug.threadCpuTimeNanos();
         for (int gridY = 0; gridY < screenHeight_; ++gridY)
         {
             for (int gridX = 0; gridX < screenWidth_; ++gridX)
@@ -243,20 +456,213 @@ public class MandelbrotView extends View
                 iterationArray_[gridX][gridY] = -1;
             }
         }
+        // Part of the energy spent on the new level, though it is done on the UI thread before its jobs start
+        if (startCpuNanos >= 0)
+        {
+            renderScheduler_.addNextFrameCpuNanos(Debug.threadCpuTimeNanos() - startCpuNanos);
+        }
 
         // Create jobs to calculate and render the new zoom level at one eighth, quarter half and full size.
         // NOTE - order is important so the progressive rendering appears correct/optimum i.e. it's a FIFO
-        CreationJob eighthJob = new EightCreationJob(currentZoomLevel_);
-        creationJobs_.addLast(eighthJob);
+        if (speculativeHit != null)
+        {
+            // Both are already calculated, just copy them in.
+            CreationJob speculativeJob = new SpeculativeHitCreationJob(currentZoomLevel_, speculativeHit);
+            submitJob(speculativeJob);
+        }
+        else
+        {
+            CreationJob eighthJob = new EightCreationJob(currentZoomLevel_);
+            submitJob(eighthJob);
 
-        CreationJob quarterJob = new QuarterCreationJob(currentZoomLevel_);
-        creationJobs_.addLast(quarterJob);
+            CreationJob quarterJob = new QuarterCreationJob(currentZoomLevel_);
+            submitJob(quarterJob);
+        }
 
         CreationJob halfJob = new HalfScaleCreationJob(currentZoomLevel_);
-        creationJobs_.addLast(halfJob);
+        submitJob(halfJob);
 
         CreationJob fullJob = new FullScaleCreationJob(currentZoomLevel_);
-        creationJobs_.addLast(fullJob);
+        submitJob(fullJob);
+
+        CreationJob deepeningJob = new DeepeningCreationJob(currentZoomLevel_);
+        submitJob(deepeningJob);
+    }
+
+
+    /**
+     * Replace the color palette used for the escaped points.
+     *
+     * The control colors are spaced evenly around the palette, and linearly interpolated (wrapping from the last color
+     * back to the first) to fill the high resolution lookup table.  The current level is then re-colored from the
+     * cached iteration counts, it is NOT recalculated.
+     *
+     * Intended to be called from the UI thread.
+     *
+     * @param controlColors At least one ARGB color.
+     */
+    public void setPalette(int[] controlColors)
+    {
+        if (controlColors == null || controlColors.length == 0)
+        {
+            throw new IllegalArgumentException("At least one palette color is required");
+        }
+
+        final int[] lookupTable = new int[paletteSize_ * paletteSubdivisions_];
+        for (int n = 0; n < lookupTable.length; ++n)
+        {
+            final float position = (float) n * controlColors.length / lookupTable.length;
+            final int fromIndex = (int) position;
+            final float blend = position - fromIndex;
+            final int from = controlColors[fromIndex];
+            final int to = controlColors[(fromIndex + 1) % controlColors.length];
+            lookupTable[n] = Color.rgb(
+                    Math.round(Color.red(from) + (Color.red(to) - Color.red(from)) * blend),
+                    Math.round(Color.green(from) + (Color.green(to) - Color.green(from)) * blend),
+                    Math.round(Color.blue(from) + (Color.blue(to) - Color.blue(from)) * blend));
+        }
+        paletteLookupTable_ = lookupTable;
+        recolor();
+    }
+
+
+    /**
+     * Rotate the palette, without recalculating.
+     *
+     * Intended to be called from the UI thread.
+     *
+     * @param offset The number of palette lookup table entries to rotate by.
+     */
+    public void setPaletteOffset(int offset)
+    {
+        final int length = paletteLookupTable_.length;
+        paletteOffset_ = ((offset % length) + length) % length;
+        recolor();
+    }
+
+
+    /**
+     * Display escaped points that took at least the given number of iterations as inside the set, without recalculating.
+     *
+     * Intended to be called from the UI thread.
+     *
+     * @param clamp The iteration count clamp, Integer.MAX_VALUE to display every calculated point.
+     */
+    public void setDisplayIterationClamp(int clamp)
+    {
+        displayIterationClamp_ = clamp;
+        recolor();
+    }
+
+
+    /**
+     * Start or stop animating the palette offset, once per display frame.
+     *
+     * Intended to be called from the UI thread.
+     *
+     * @param cycling Whether to cycle the colors.
+     */
+    public void setColorCycling(boolean cycling)
+    {
+        if (cycling && ! colorCycling_)
+        {
+            colorCycling_ = true;
+            // A frame may still be pending from before a quick stop and start, only ever run one chain of frames.
+            removeCallbacks(colorCycleFrame_);
+            postOnAnimation(colorCycleFrame_);
+        }
+        colorCycling_ = cycling;
+    }
+
+
+    /**
+     * Offload the calculation of each level to a RenderServer, e.g. on a desktop on the same LAN.
+     *
+     * The connection is made by the job thread, when the next subset is calculated.  If the server cannot be reached,
+     * or fails part way through, the subset is calculated locally and the server is tried again later.
+     *
+     * Intended to be called from the UI thread.
+     *
+     * @param host The host name or address of the server, or null to always calculate on the device.
+     * @param port The port of the server.
+     */
+    public void setRenderServer(String host, int port)
+    {
+        final TileSource previousTileSource = tileSource_;
+        tileSource_ = (host == null) ? new LocalTileSource() : new RemoteTileSource(host, port);
+        if (previousTileSource instanceof RemoteTileSource)
+        {
+            ((RemoteTileSource) previousTileSource).close();
+        }
+    }
+
+
+    /**
+     * Re-color the latest rendered bitmap from the cached iteration counts, and request a redraw.
+     *
+     * If the job thread is coloring, it is tried again on the next display frame, so a palette or clamp change is
+     * never lost.
+     *
+     * Intended to be called from the UI thread.
+     */
+    private void recolor()
+    {
+        if ( ! tryRecolor())
+        {
+            removeCallbacks(recolorFrame_);
+            postOnAnimation(recolorFrame_);
+        }
+    }
+
+
+    /**
+     * Re-color the latest rendered bitmap from the cached iteration counts, and request a redraw, unless the job thread
+     * is coloring.
+     *
+     * The UI thread never waits for the job thread's colorize pass, which re-indexes the whole level, a display frame
+     * or more on the FireStick.  It would rather skip the frame.
+     *
+     * NOTE - nothing is recalculated, so this only does anything if the latest rendered bitmap belongs to the current
+     * zoom level.  Otherwise the iteration counts are being recalculated and will be rendered with the current colors
+     * anyway.
+     *
+     * Intended to be called from the UI thread.
+     *
+     * @return False if the job thread was coloring, so nothing was done.
+     */
+    private boolean tryRecolor()
+    {
+        // Read the factor before the level, doPostJob writes them in the opposite order.
+        final int factor = lastRenderedFactor_;
+        if (actualRenderedZoomLevel_ != currentZoomLevel_)
+        {
+            return true;
+        }
+
+        final Bitmap bitmap = colorizeStage_.recolor(getBitmapPair(factor), factor);
+        if (bitmap == null)
+        {
+            return false;
+        }
+        renderBitmap_ = bitmap;
+        invalidate();
+        return true;
+    }
+
+
+    /**
+     * @param factor The progressive rendering/"interlace"/scaling factor.
+     * @return The pair of bitmaps of that scale.
+     */
+    private Bitmap[] getBitmapPair(int factor)
+    {
+        switch (factor)
+        {
+            case 1: return bitmapPairFull_;
+            case 2: return bitmapPairHalf_;
+            case 4: return bitmapPairQuarter_;
+            default: return bitmapPairEighth_;
+        }
     }
 
 
@@ -269,7 +675,9 @@ public class MandelbrotView extends View
     {
         // The zoom level at the time the job was created.  may change before execution.
         protected final int zoomLevelAtJobCreation_;
-        // The bitmap to draw into
+        // The pair of bitmaps to draw into
+        protected Bitmap[] bitmapPairForJob_;
+        // The one of the pair drawn into, the one not on screen at the time, null until drawn
         protected Bitmap renderBitmapForJob_;
         // The progressive rendering/"interlace"/scaling factor to draw at
         protected int factor_;
@@ -289,7 +697,15 @@ public class MandelbrotView extends View
         // Rendering is the same for all sub-classes, actual drawing needs to be done on the UI thread though.
         public void doPostJob()
         {
-            renderBitmap_ = Bitmap.createScaledBitmap(renderBitmapForJob_, screenWidth_, screenHeight_, true);
+            // Interrupted by the user zoom before drawing anything, keep showing the latest bitmap
+            if (renderBitmapForJob_ == null)
+            {
+                return;
+            }
+            lastRenderedFactor_ = factor_;
+            actualRenderedZoomLevel_ = zoomLevelAtJobCreation_;
+            // No scaled copy, onDraw scales the bitmap up.  It was drawn off screen, so it is simply swapped in.
+            renderBitmap_ = renderBitmapForJob_;
             // post stuff to UI thread on outer class.
             post(new Runnable()
             {
@@ -311,11 +727,6 @@ public class MandelbrotView extends View
      */
     private class FullScaleCreationJob extends CreationJob
     {
-        // Tables of starting points for calculating subsets of the Mandelbrot set
-        private final int[] fullScaleCreationStartingPairs_ = { 1,1, 3,1, 5,1, 7,1, 1,3, 3,3, 5,3, 7,3, 1,5, 3,5, 5,5, 7,5, 1,7, 3,7, 5,7, 7,7 };
-        private final int[] fullScaleInterpolatedCreationStartingPairs_ = { 1,0, 3,0, 5,0, 7,0, 0,1, 2,1, 4,1, 6,1, 1,2, 3,2, 5,2, 7,2, 0,3, 2,3, 4,3, 6,3,
-                1,4, 3,4, 5,4, 7,4, 0,5, 2,5, 4,5, 6,5, 1,6, 3,6, 5,6, 7,6, 0,7, 2,7, 4,7, 6,7};
-
         /**
          * Constructor
          *
@@ -324,7 +735,7 @@ public class MandelbrotView extends View
         FullScaleCreationJob(int currentZoomLevel)
         {
             super(currentZoomLevel);
-            renderBitmapForJob_ = bitmapFull_;
+            bitmapPairForJob_ = bitmapPairFull_;
             factor_ = 1;
         }
 
@@ -352,7 +763,7 @@ public class MandelbrotView extends View
 
             if (zoomLevelAtJobCreation_ >= currentZoomLevel_)
             {
-                renderLevelByStep(renderBitmapForJob_, factor_);
+                renderBitmapForJob_ = renderLevelByStep(bitmapPairForJob_, factor_);
             }
         }
     }
@@ -365,9 +776,6 @@ public class MandelbrotView extends View
      */
     private class HalfScaleCreationJob extends CreationJob
     {
-        // Tables of starting points for calculating subsets of the Mandelbrot set
-        private final int[] halfScaleCreationStartingPairs_ = { 2,0,  6,0,  0,2,  2,2,  4,2,  6,2,  2,4,  6,4,  0,6,  2,6,  4,6,  6,6 };
-
         /**
          * Constructor
          *
@@ -376,7 +784,7 @@ public class MandelbrotView extends View
         HalfScaleCreationJob(int currentZoomLevel)
         {
             super(currentZoomLevel);
-            renderBitmapForJob_ = bitmapHalf_;
+            bitmapPairForJob_ = bitmapPairHalf_;
             factor_ = 2;
         }
 
@@ -398,7 +806,7 @@ public class MandelbrotView extends View
 
             if (zoomLevelAtJobCreation_ >= currentZoomLevel_)
             {
-                renderLevelByStep(renderBitmapForJob_, factor_);
+                renderBitmapForJob_ = renderLevelByStep(bitmapPairForJob_, factor_);
             }
         }
     }
@@ -411,9 +819,6 @@ public class MandelbrotView extends View
      */
     private class QuarterCreationJob extends CreationJob
     {
-        // Tables of starting points for calculating subsets of the Mandelbrot set
-        private final int[] level4CreationStartingPairs_ = { 4,0,  4,4,  0,4};
-
         /**
          * Constructor
          *
@@ -422,7 +827,7 @@ public class MandelbrotView extends View
         QuarterCreationJob(int currentZoomLevel)
         {
             super(currentZoomLevel);
-            renderBitmapForJob_ = bitmapQuarter_;
+            bitmapPairForJob_ = bitmapPairQuarter_;
             factor_ = 4;
         }
 
@@ -444,7 +849,7 @@ public class MandelbrotView extends View
 
             if (zoomLevelAtJobCreation_ >= currentZoomLevel_)
             {
-                renderLevelByStep(renderBitmapForJob_, factor_);
+                renderBitmapForJob_ = renderLevelByStep(bitmapPairForJob_, factor_);
             }
         }
     }
@@ -455,9 +860,6 @@ public class MandelbrotView extends View
      */
     private class EightCreationJob extends CreationJob
     {
-        // Tables of starting points for calculating a subset of the Mandelbrot set
-        private final int[] level8CreationStartingPairs_ = { 0,0 };
-
         /**
          * Constructor
          *
@@ -466,7 +868,7 @@ public class MandelbrotView extends View
         EightCreationJob(int currentZoomLevel)
         {
             super(currentZoomLevel);
-            renderBitmapForJob_ = bitmapEighth_;
+            bitmapPairForJob_ = bitmapPairEighth_;
             factor_ = 8;
         }
 
@@ -481,6 +883,10 @@ public class MandelbrotView extends View
         @Override
         public void doLongJob()
         {
+            // The first job of a level, so forget the previous level's unresolved points
+            renderScheduler_.startFrame();
+            clearUnresolvedPoints();
+
             for (int index = 0; index < level8CreationStartingPairs_.length; index +=2)
             {
                 // Always calculate the eighth scale, once you have started, don't check for user interruption
@@ -488,202 +894,1911 @@ public class MandelbrotView extends View
             }
 
             // Always render the eighth scale, once you have started, don't check for user interruption
-            renderLevelByStep(renderBitmapForJob_, factor_);
+            renderBitmapForJob_ = renderLevelByStep(bitmapPairForJob_, factor_);
         }
     }
 
 
     /**
-     * Used to create a portion of the Mandelbrot set for the current zoom level.
-     *
-     * It is expected to be called repeatedly to calculate all the values for a single level.
-     *
-     * It skips across cells in the iteration count array, calculating whether they are in or out
-     * of the Mandelbrot set.  And then setting their iteration count value to reflect this.
-     * These iteration counts can then be used to create bitmap image.
-     *
-     * The purpose of splitting the calculation into multiple steps is
-     * 1) to allow us to display a one eighth, one quarter and one half version of each zoom level to the user
-     * as soon as the values have been calculated.
-     * 2) to reuse the values from the eighth, quarter, and half levels in the final full scale version.  i.e.  to
-     * not recalculate each scale individually.
-     *
-     * NOTE with an naive full calculation algorithm, the time from a user zoom to actual display on the Android TV
-     * API 25 emulator, with two vcores on a 3GHz Intel i5, with an escape iteration maximum of 1024 and an escape value of 64.0
-     * was about 15 seconds.
-     * On an actual FireStick 2, it was ~700 seconds!  With all the optimizations, progressive rendering, interpolation,
-     * periodicity, this has been reduced to a still ridiculous ~100 seconds.  The current hard coded values of 512 and 2.0
-     * result in a rendering of the final full scale image in about 30 seconds on the FireStick (and 2 seconds on emulator).
-     *
-     * Interpolation optimization.  If a pixel is surrounded by the same color on all four sides, we can fill it with the
-     * same color.  We did measure that this was a noticeable performance increase.  We did not measure the error rate though.
-     *
-     * NOTE at present these errors are probably OK as we do not resue the previous level to seed any of the values in
-     * the next zoom level.  However when we introduce that optimization we will need to actually calculate any interpolated
-     * points.
-     *
-     * The extension of this optimization is the area filling optimization that attempts to subset
-     * the image into rectangular areas and if all four sides have the same value, they fill the rectangle with that value.
-     *
-     * NOTE Interpolating is only possible at the finest level.  It also depends on the ordering
-     * of the previous calls to this function, to ensure that the cells on all four sides already have values
-     * assigned to them. i.e The order of pairs in the table driven arrays for starting coordinates matters.
-     *
-     * NOTE The choice of "escape" value, typically 2.0, and the maximum number of iterations to
-     * try before assuming the point is in the Mandelbrot set both have a determination on the "fineness" of the
-     * image.  But, increasing them increases both fineness and runtime.
-     *
-     * Periodicity optimization.  If a cell is in the set, the test will iterate to the maximum without the values escaping.
-     * But often the values enter a repeating cycle long before they reach the maximum iteration count.  Testing for these
-     * cycles does actually save iterations.
-     *
-     * NOTE The check for periodicity usually first tests the immediate neighbour to see whether to bother with
-     * a periodicity test at all.  This optimization is intended to avoid unnecessary calculations.
-     * In our case, as we construct the set in jumps of eight pixels, this test would be harder.  At present we simply use
-     * the last pixel created, which is off by seven.  This will not be as optimal.  But runtime metrics showed that we
-     * still avoid many calculations.
-     *
-     * TODO rethink to remove the state parameters and the overall function complexity
+     * Used to install a speculatively rendered eighth and quarter scale, in place of calculating them.
      *
-     * @param startX The starting x offset into the iteration count array
-     * @param startY The starting y offset into the iteration count array
-     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
-     * @param checkForAbort Whether we check for user interruption to stop calculating.
+     * The speculative renderer keeps the z and periodicity test state of its unresolved points, the same as a local
+     * calculation, so they are deepened from where it stopped.  Points it proved inside are not deepened at all.
      */
-    private void createMandelbrotSubset(final int startX, final int startY, final int startingZoomLevel, final boolean checkForAbort, final boolean useInterpolation)
+    private class SpeculativeHitCreationJob extends CreationJob
     {
-        final int step = 8;
-        final double realPixelIncrement = (maximumRealRange_ - minimumRealRange_) / (screenWidth_ - 1);
-        final double imaginaryPixelIncrement = (maximumImaginaryRange_ - minimumImaginaryRange_) / (screenHeight_ - 1);
-
-        // Used to allow early aborting of the algorithm, when the calculations are no longer needed due to user zooming.
-        boolean userInterruption = false;
+        // The speculatively rendered points, at every fourth row and column
+        private final SpeculativeResult result_;
 
-        for (int gridY = startY; gridY < screenHeight_ && ! userInterruption; gridY += step)
+        /**
+         * Constructor
+         *
+         * @param currentZoomLevel The zoom level when this job was created.
+         * @param result The speculatively rendered zoom level.
+         */
+        SpeculativeHitCreationJob(int currentZoomLevel, SpeculativeResult result)
         {
-            // The value on the imaginary axis for this pixel
-            final double currentImaginary = maximumImaginaryRange_ - gridY * imaginaryPixelIncrement;
+            super(currentZoomLevel);
+            result_ = result;
+            bitmapPairForJob_ = bitmapPairQuarter_;
+            factor_ = 4;
+        }
 
-            // Used to optimize periodicity tests.
-            boolean previousPixelWasInsideTheSet = false;
+        /**
+         * Copy the speculatively rendered points into the iteration count array, then render the quarter scale.
+         *
+         * NOTE this CANNOT be interrupted by the user zoom, the same as the eighth scale.
+         *
+         * Intended to be called from a background thread
+         */
+        @Override
+        public void doLongJob()
+        {
+            // The first job of a level, so forget the previous level's unresolved points
+            renderScheduler_.startFrame();
+            clearUnresolvedPoints();
 
-            for (int gridX = startX; gridX < screenWidth_; gridX += step)
+            int index = 0;
+            for (int gridY = 0; gridY < screenHeight_; gridY += 4)
             {
-                // Possible value interpolation for this cell in the iteration count array
-                boolean skipDueToInterpolating = false;
-
-                // At the finest level, i.e. when all the other iteration count calculations are complete, it is an optimization to
-                // interpolate the values for pixels where all four neighbours are the same color
-                if (useInterpolation)
+                for (int gridX = 0; gridX < screenWidth_; gridX += 4, ++index)
                 {
-                    // If not the top or bottom row
-                    if (gridY > 0 && gridY < screenHeight_ - 1)
-                    {
-                        // If not the left or right column
-                        if (gridX > 0 && gridX < screenWidth_ - 1)
-                        {
-                            final int left = iterationArray_[gridX - 1][gridY];
-                            final int right = iterationArray_[gridX + 1][gridY];
-                            if (left == right)
-                            {
-                                final int above = iterationArray_[gridX][gridY - 1];
-                                if (above == left)
-                                {
-                                    final int below = iterationArray_[gridX][gridY + 1];
-                                    if (below == left)
-                                    {
-                                        // If cells on all four sides are the same, assume this one is the same
-                                        iterationArray_[gridX][gridY] = left;
-                                        skipDueToInterpolating = true;
-                                    }
-                                }
-                            }
-                        }
-                    }
+                    iterationArray_[gridX][gridY] = result_.iterations_[index];
+                    magnitudeArray_[gridX][gridY] = result_.magnitudes_[index];
                 }
+            }
 
-                if (!skipDueToInterpolating)
-                {
-                    // The value on the real axis for this pixel
-                    final double currentReal = minimumRealRange_ + gridX * realPixelIncrement;
-
-                    // Starting values for the "Mandelbrot set member" test algorithm
-                    double realZ = currentReal;
-                    double imaginaryZ = currentImaginary;
-                    boolean insideTheSet = true;
-                    int iterations = 0;
+            // Spread the unresolved points across the containers a row at a time, as a local calculation would
+            final UnresolvedPoints points = result_.unresolvedPoints_;
+            for (int unresolved = 0; unresolved < points.count_; ++unresolved)
+            {
+                final int gridX = points.gridCoordinates_[unresolved] >>> 16;
+                final int gridY = points.gridCoordinates_[unresolved] & 0xffff;
+                unresolvedPoints_[(gridY / 4) % unresolvedPoints_.length].add(gridX, gridY, points.realZ_[unresolved], points.imaginaryZ_[unresolved],
+                        points.iterations_[unresolved], points.realPeriodicityTestValue_[unresolved], points.imaginaryPeriodicityTestValue_[unresolved],
+                        points.periodicityTestCount_[unresolved], points.maximumAttemptsToFindRepeats_[unresolved]);
+            }
 
-                    // Starting values for the periodicity tests for this point
-                    double realPeriodicityTestValue = 0.0;
-                    double imaginaryPeriodicityTestValue = 0.0;
-                    int currentPeriodicityTestCount = 0;
-                    int maximumAttemptsToFindRepeats = 1;
+            renderBitmapForJob_ = renderLevelByStep(bitmapPairForJob_, factor_);
+        }
+    }
+
+
+    /**
+     * Inner helper class holding the eighth and quarter scale points of a speculatively rendered next zoom level.
+     *
+     * Along with the z and periodicity test state of its unresolved points, ready to be deepened if the level is used.
+     */
+    private static class SpeculativeResult
+    {
+        // The zoom level this is the next level of, only valid while that is the current level
+        private final int parentZoomLevel_;
+        // The screen position of the zoom target within the parent level, clicks near it are snapped to it
+        private final float pixelX_;
+        private final float pixelY_;
+        // The ranges of the next level, as onTouchEvent would calculate them for the zoom target
+        private final double minimumRealRange_;
+        private final double maximumRealRange_;
+        private final double minimumImaginaryRange_;
+        private final double maximumImaginaryRange_;
+        // The iteration counts and final |z|^2 of every fourth row and column, by row, as in the iteration count array
+        private final int[] iterations_ = new int[(screenWidth_ / 4) * (screenHeight_ / 4)];
+        private final float[] magnitudes_ = new float[(screenWidth_ / 4) * (screenHeight_ / 4)];
+        // The points that neither escaped, nor were proven inside the set, by row
+        private final UnresolvedPoints unresolvedPoints_ = new UnresolvedPoints(speculativeUnresolvedPointsCapacity_);
+        // The number of rows calculated so far
+        private int rowsCalculated_ = 0;
+
+        SpeculativeResult(int parentZoomLevel, float pixelX, float pixelY, double[] zoomedRanges)
+        {
+            parentZoomLevel_ = parentZoomLevel;
+            pixelX_ = pixelX;
+            pixelY_ = pixelY;
+            minimumRealRange_ = zoomedRanges[0];
+            maximumRealRange_ = zoomedRanges[1];
+            minimumImaginaryRange_ = zoomedRanges[2];
+            maximumImaginaryRange_ = zoomedRanges[3];
+        }
+
+        boolean isComplete()
+        {
+            return rowsCalculated_ == screenHeight_ / 4;
+        }
+
+        boolean isNear(float x, float y)
+        {
+            return Math.abs(x - pixelX_) <= speculativeHitTolerance_ && Math.abs(y - pixelY_) <= speculativeHitTolerance_;
+        }
+    }
+
+
+    /**
+     * Inner helper class that uses the otherwise idle job thread to render the eighth and quarter scale of the likely
+     * next zoom levels.
+     *
+     * The most likely target is the current mouse cursor position.  Failing that, the centres of the blocks of the
+     * current level with the most boundary detail are tried, i.e. the most "interesting" places to click.
+     *
+     * The work is done one row at a time, so it is dropped almost immediately when a real job arrives, and the
+     * partially rendered level is abandoned when the user zooms.  Completed levels are kept in a small bounded cache
+     * until the user zooms, when onTouchEvent takes a matching one, if any.
+     *
+     * NOTE - the pending level is only touched by the job thread, the cache and statistics by both threads.
+     */
+    private class SpeculativeRenderer
+    {
+        // Completed levels, oldest first
+        private final List<SpeculativeResult> cache_ = new ArrayList<SpeculativeResult>(speculativeCacheSize_);
+        // The level currently being rendered, if any
+        private SpeculativeResult pending_ = null;
+        // Whether the pending level is for the mouse cursor, rather than for a boundary block
+        private boolean pendingIsForCursor_ = false;
+        // Used to hold the zoomed ranges for a target
+        private final double[] zoomedRanges_ = new double[4];
+        // Only used from the job thread
+        private final EscapeKernel kernel_ = new EscapeKernel();
+
+        // Hit rate statistics
+        private int hits_ = 0;
+        private int misses_ = 0;
+
+        /**
+         * Called repeatedly by the job thread while there are no jobs, does a small amount of speculative rendering.
+         *
+         * @return Whether there was anything to do, if not the job thread can park.
+         */
+        boolean doIdleStep()
+        {
+            final int zoomLevel = currentZoomLevel_;
+
+            // Only guess once the current level is finished, its detail is used to choose the targets.
+            if (actualRenderedZoomLevel_ != zoomLevel)
+            {
+                return false;
+            }
+
+            // Abandon a level for the previous zoom, or for where the cursor used to be
+            if (pending_ != null && (pending_.parentZoomLevel_ != zoomLevel || (pendingIsForCursor_ && ! pending_.isNear(hoverX_, hoverY_))))
+            {
+                pending_ = null;
+            }
+
+            if (pending_ == null && ! chooseNextTarget(zoomLevel))
+            {
+                return false;
+            }
+
+            // Speculating is spent on the next level, whether or not it is used, so count it in the next frame
+            final long startCpuNanos = Debug.threadCpuTimeNanos();
+            calculateRow(pending_, pending_.rowsCalculated_);
+            pending_.rowsCalculated_++;
+            if (startCpuNanos >= 0)
+            {
+                renderScheduler_.addNextFrameCpuNanos(Debug.threadCpuTimeNanos() - startCpuNanos);
+            }
+
+            if (pending_.isComplete())
+            {
+                store(pending_);
+                pending_ = null;
+            }
+            return true;
+        }
+
+        /**
+         * Choose the next zoom target to render, the mouse cursor if not already rendered, then the boundary blocks.
+         *
+         * @param zoomLevel The current zoom level.
+         * @return Whether there is a target to render.
+         */
+        private boolean chooseNextTarget(int zoomLevel)
+        {
+            final float cursorX = hoverX_;
+            final float cursorY = hoverY_;
+            if (cursorX >= 0.0f && cursorY >= 0.0f && ! isCached(zoomLevel, cursorX, cursorY))
+            {
+                pendingIsForCursor_ = true;
+                return createPending(zoomLevel, cursorX, cursorY);
+            }
+
+            if (cacheCount(zoomLevel) >= speculativeCacheSize_)
+            {
+                return false;
+            }
+
+            // Score each block by the number of neighbouring eighth scale points with differing iteration counts
+            int bestScore = 0;
+            float bestX = 0.0f;
+            float bestY = 0.0f;
+            for (int blockY = 0; blockY + boundaryBlockSize_ <= screenHeight_; blockY += boundaryBlockSize_)
+            {
+                for (int blockX = 0; blockX + boundaryBlockSize_ <= screenWidth_; blockX += boundaryBlockSize_)
+                {
+                    final float centreX = blockX + boundaryBlockSize_ / 2;
+                    final float centreY = blockY + boundaryBlockSize_ / 2;
+                    if (isCached(zoomLevel, centreX, centreY))
+                    {
+                        continue;
+                    }
+
+                    // Proven inside and unresolved points are both inside as far as the boundary goes
+                    int score = 0;
+                    for (int gridY = blockY; gridY < blockY + boundaryBlockSize_ - 8; gridY += 8)
+                    {
+                        for (int gridX = blockX; gridX < blockX + boundaryBlockSize_ - 8; gridX += 8)
+                        {
+                            final int iterations = Math.max(-1, iterationArray_[gridX][gridY]);
+                            if (iterations != Math.max(-1, iterationArray_[gridX + 8][gridY]))
+                            {
+                                score++;
+                            }
+                            if (iterations != Math.max(-1, iterationArray_[gridX][gridY + 8]))
+                            {
+                                score++;
+                            }
+                        }
+                    }
+
+                    if (score > bestScore)
+                    {
+                        bestScore = score;
+                        bestX = centreX;
+                        bestY = centreY;
+                    }
+                }
+            }
+
+            if (bestScore == 0)
+            {
+                return false;
+            }
+            pendingIsForCursor_ = false;
+            return createPending(zoomLevel, bestX, bestY);
+        }
+
+        /**
+         * Start rendering the next level for a zoom target.
+         *
+         * @param zoomLevel The zoom level the target was chosen at.
+         * @param pixelX The screen position of the zoom target.
+         * @param pixelY The screen position of the zoom target.
+         * @return Whether the target is still valid, i.e. the user has not zoomed while we read the ranges.
+         */
+        private boolean createPending(int zoomLevel, float pixelX, float pixelY)
+        {
+            calculateZoomedRanges(pixelX, pixelY, zoomedRanges_);
+            if (currentZoomLevel_ != zoomLevel)
+            {
+                return false;
+            }
+            pending_ = new SpeculativeResult(zoomLevel, pixelX, pixelY, zoomedRanges_);
+            return true;
+        }
+
+        /**
+         * Calculate one row, of every fourth point, of a speculative level.
+         *
+         * The same calculation as createMandelbrotSubset at the initial budget, including the periodicity test, but
+         * without the interpolation optimization, so that the results can be installed at the eighth and quarter scale
+         * unchanged.  The z and periodicity test state of the unresolved points is kept, to be deepened if the level
+         * is used.
+         *
+         * @param result The speculative level.
+         * @param row The row to calculate.
+         */
+        private void calculateRow(SpeculativeResult result, int row)
+        {
+            final double realPixelIncrement = (result.maximumRealRange_ - result.minimumRealRange_) / (screenWidth_ - 1);
+            final double imaginaryPixelIncrement = (result.maximumImaginaryRange_ - result.minimumImaginaryRange_) / (screenHeight_ - 1);
+            final int gridY = row * 4;
+            final double currentImaginary = result.maximumImaginaryRange_ - gridY * imaginaryPixelIncrement;
+
+            int index = row * (screenWidth_ / 4);
+            boolean previousPixelWasInsideTheSet = false;
+            for (int gridX = 0; gridX < screenWidth_; gridX += 4, ++index)
+            {
+                final double currentReal = result.minimumRealRange_ + gridX * realPixelIncrement;
+                kernel_.start(currentReal, currentImaginary);
+                final int outcome = kernel_.iterate(initialTestIterations_, previousPixelWasInsideTheSet);
+                if (outcome == EscapeKernel.ESCAPED)
+                {
+                    previousPixelWasInsideTheSet = false;
+                    result.iterations_[index] = kernel_.iterations_;
+                    result.magnitudes_[index] = (float) kernel_.magnitudeSquared_;
+                }
+                else if (outcome == EscapeKernel.UNRESOLVED)
+                {
+                    previousPixelWasInsideTheSet = true;
+                    result.iterations_[index] = unresolvedIterationCount_;
+                    result.unresolvedPoints_.add(gridX, gridY, kernel_.realZ_, kernel_.imaginaryZ_, kernel_.iterations_, kernel_.realPeriodicityTestValue_,
+                            kernel_.imaginaryPeriodicityTestValue_, kernel_.periodicityTestCount_, kernel_.maximumAttemptsToFindRepeats_);
+                }
+                else
+                {
+                    previousPixelWasInsideTheSet = true;
+                    result.iterations_[index] = -1;
+                }
+            }
+        }
+
+        /**
+         * @param zoomLevel The current zoom level.
+         * @param pixelX The screen position of the zoom target.
+         * @param pixelY The screen position of the zoom target.
+         * @return Whether a level for the zoom target is already cached, ignoring any left from a previous zoom level.
+         */
+        private synchronized boolean isCached(int zoomLevel, float pixelX, float pixelY)
+        {
+            for (SpeculativeResult result : cache_)
+            {
+                if (result.parentZoomLevel_ == zoomLevel && result.isNear(pixelX, pixelY))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param zoomLevel The current zoom level.
+         * @return The number of levels cached for the current zoom level.
+         */
+        private synchronized int cacheCount(int zoomLevel)
+        {
+            int count = 0;
+            for (SpeculativeResult result : cache_)
+            {
+                if (result.parentZoomLevel_ == zoomLevel)
+                {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Keep a completed level, evicting the oldest if the cache is full.
+         *
+         * @param result The completed level.
+         */
+        private synchronized void store(SpeculativeResult result)
+        {
+            // The user may have zoomed during the last row
+            final int zoomLevel = currentZoomLevel_;
+            if (result.parentZoomLevel_ != zoomLevel)
+            {
+                return;
+            }
+            // Levels left from a previous zoom level are of no use, e.g. if the user zoomed while one was being stored
+            for (int index = cache_.size() - 1; index >= 0; --index)
+            {
+                if (cache_.get(index).parentZoomLevel_ != zoomLevel)
+                {
+                    cache_.remove(index);
+                }
+            }
+            if (cache_.size() >= speculativeCacheSize_)
+            {
+                cache_.remove(0);
+            }
+            cache_.add(result);
+        }
+
+        /**
+         * Called by onTouchEvent when the user zooms, to find a level rendered for that zoom target.
+         *
+         * The cache is emptied either way, as all of its levels are for the current zoom level.
+         *
+         * @param zoomLevel The zoom level being zoomed from.
+         * @param pixelX The screen position the user clicked.
+         * @param pixelY The screen position the user clicked.
+         * @return The matching level, or null if the prediction missed.
+         */
+        synchronized SpeculativeResult takeHit(int zoomLevel, float pixelX, float pixelY)
+        {
+            SpeculativeResult hit = null;
+            for (SpeculativeResult result : cache_)
+            {
+                if (result.parentZoomLevel_ == zoomLevel && result.isNear(pixelX, pixelY))
+                {
+                    hit = result;
+                    break;
+                }
+            }
+            cache_.clear();
+
+            if (hit != null)
+            {
+                hits_++;
+            }
+            else
+            {
+                misses_++;
+            }
+            Log.i(TAG, "Speculative rendering hit rate " + hits_ + "/" + (hits_ + misses_));
+            return hit;
+        }
+
+        /**
+         * @return The fraction of zooms that used a speculatively rendered level.
+         */
+        synchronized float getHitRate()
+        {
+            return (hits_ + misses_) == 0 ? 0.0f : (float) hits_ / (hits_ + misses_);
+        }
+    }
+
+
+    /**
+     * Used to incrementally deepen the iteration budget of the points left unresolved by the other levels.
+     *
+     * The other levels only iterate each point up to a low budget, so the first full frame appears quickly.  Points
+     * that neither escaped, nor were proven inside the set by the periodicity test, keep their z state.  This job then
+     * resumes just those points, doubling the budget each pass, until a pass resolves too few points to be worth
+     * continuing.  So shallow views stop early, and deep views keep going until the boundary detail appears.
+     *
+     * NOTE - assumes the full scale level has already been calculated, and re-renders the points that escaped after
+     * each pass.
+     */
+    private class DeepeningCreationJob extends CreationJob
+    {
+        /**
+         * Constructor
+         *
+         * @param currentZoomLevel The zoom level when this job was created.
+         */
+        DeepeningCreationJob(int currentZoomLevel)
+        {
+            super(currentZoomLevel);
+            bitmapPairForJob_ = bitmapPairFull_;
+            factor_ = 1;
+        }
+
+        /**
+         * Deepen the unresolved points in passes of doubling budget, rendering after each pass that resolved any.
+         *
+         * As the last job of a level, this also completes the frame metrics.
+         *
+         * NOTE these calculations can be interrupted by the user zoom.
+         *
+         * Intended to be called from a background thread
+         */
+        @Override
+        public void doLongJob()
+        {
+            deepen();
+
+            if (currentZoomLevel_ == zoomLevelAtJobCreation_)
+            {
+                renderScheduler_.endFrame();
+            }
+        }
+
+        private void deepen()
+        {
+            // Points from a render server have already had a larger budget
+            int budget = Math.max(initialTestIterations_, minimumUnresolvedIterations());
+            int unresolvedPoints = countUnresolvedPoints();
+            final int[] escapedPoints = new int[1];
+            while (budget < maximumTestIterations_ && unresolvedPoints > 0 && (currentZoomLevel_ == zoomLevelAtJobCreation_))
+            {
+                budget = Math.min(budget * 2, maximumTestIterations_);
+                final int[] resolvedCoordinates = deepenUnresolvedPoints(budget, zoomLevelAtJobCreation_, escapedPoints);
+                final int newlyEscapedPoints = escapedPoints[0];
+                final int previouslyUnresolvedPoints = unresolvedPoints;
+                unresolvedPoints = countUnresolvedPoints();
+
+                if (resolvedCoordinates.length > 0 && (currentZoomLevel_ == zoomLevelAtJobCreation_))
+                {
+                    // Only the resolved points, and their mirrors, have changed, the rest of the level need not be re-indexed.
+                    // Points proven inside were already colored as inside, so there is only something new to show if any escaped.
+                    final int[] changedCoordinates = mirrorResolvedPoints(resolvedCoordinates);
+                    if (newlyEscapedPoints > 0)
+                    {
+                        renderBitmapForJob_ = colorizeStage_.colorizeChangedPoints(bitmapPairForJob_, changedCoordinates);
+                        doPostJob();
+                    }
+                }
+
+                // Relative to the points left, a deep view near the boundary has far more of them than a shallow one.
+                if (newlyEscapedPoints < previouslyUnresolvedPoints * minimumNewlyEscapedFraction_)
+                {
+                    break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Inner helper class holding the z state of the unresolved points of the current level, in compact primitive arrays.
+     *
+     * Each point is stored as its packed grid coordinates, the real and imaginary parts of z, and the number of
+     * iterations already applied.  Along with the state of its periodicity test, i.e. the z value being tested for a
+     * repeat, and the progress through the current test length, so the test carries on across deepening passes.
+     * The arrays grow on demand and are reused from level to level, but trimmed back when cleared, so one level with
+     * a lot of unresolved points does not hold on to the memory for the rest of the session.
+     *
+     * The coordinates of the points that escape or are proven inside during a deepening pass are also left here, at
+     * the start of the range they were deepened in, so only those points need re-coloring.
+     */
+    private static class UnresolvedPoints
+    {
+        private int count_ = 0;
+        private int[] gridCoordinates_;
+        private int[] resolvedCoordinates_;
+        private double[] realZ_;
+        private double[] imaginaryZ_;
+        private int[] iterations_;
+        private double[] realPeriodicityTestValue_;
+        private double[] imaginaryPeriodicityTestValue_;
+        private int[] periodicityTestCount_;
+        private int[] maximumAttemptsToFindRepeats_;
+        // The number of points held before growing, trimmed back to when cleared
+        private final int capacity_;
+
+        /**
+         * Constructor
+         */
+        UnresolvedPoints()
+        {
+            this(unresolvedPointsCapacity_);
+        }
+
+        /**
+         * Constructor
+         *
+         * @param capacity The number of points held before growing.
+         */
+        UnresolvedPoints(int capacity)
+        {
+            capacity_ = capacity;
+            allocate(capacity);
+        }
+
+        void clear()
+        {
+            count_ = 0;
+            if (iterations_.length > capacity_)
+            {
+                allocate(capacity_);
+            }
+        }
+
+        private void allocate(int capacity)
+        {
+            gridCoordinates_ = new int[capacity];
+            resolvedCoordinates_ = new int[capacity];
+            realZ_ = new double[capacity];
+            imaginaryZ_ = new double[capacity];
+            iterations_ = new int[capacity];
+            realPeriodicityTestValue_ = new double[capacity];
+            imaginaryPeriodicityTestValue_ = new double[capacity];
+            periodicityTestCount_ = new int[capacity];
+            maximumAttemptsToFindRepeats_ = new int[capacity];
+        }
+
+        /**
+         * Move a range of points to the end of the points kept so far, used to close up the ranges after deepening.
+         *
+         * @param start The first point of the range.
+         * @param length The number of points in the range.
+         */
+        void moveRange(int start, int length)
+        {
+            if (start != count_)
+            {
+                System.arraycopy(gridCoordinates_, start, gridCoordinates_, count_, length);
+                System.arraycopy(realZ_, start, realZ_, count_, length);
+                System.arraycopy(imaginaryZ_, start, imaginaryZ_, count_, length);
+                System.arraycopy(iterations_, start, iterations_, count_, length);
+                System.arraycopy(realPeriodicityTestValue_, start, realPeriodicityTestValue_, count_, length);
+                System.arraycopy(imaginaryPeriodicityTestValue_, start, imaginaryPeriodicityTestValue_, count_, length);
+                System.arraycopy(periodicityTestCount_, start, periodicityTestCount_, count_, length);
+                System.arraycopy(maximumAttemptsToFindRepeats_, start, maximumAttemptsToFindRepeats_, count_, length);
+            }
+            count_ += length;
+        }
+
+        /**
+         * Append an unresolved point.
+         *
+         * @param gridX The x offset into the iteration count array
+         * @param gridY The y offset into the iteration count array
+         * @param realZ The real part of z after the given iterations
+         * @param imaginaryZ The imaginary part of z after the given iterations
+         * @param iterations The number of iterations already applied
+         */
+        void add(int gridX, int gridY, double realZ, double imaginaryZ, int iterations)
+        {
+            // Start the periodicity test afresh, testing for a repeat of the current z
+            add(gridX, gridY, realZ, imaginaryZ, iterations, realZ, imaginaryZ, 0, 1);
+        }
+
+        /**
+         * Append an unresolved point, part way through its periodicity test.
+         *
+         * @param gridX The x offset into the iteration count array
+         * @param gridY The y offset into the iteration count array
+         * @param realZ The real part of z after the given iterations
+         * @param imaginaryZ The imaginary part of z after the given iterations
+         * @param iterations The number of iterations already applied
+         * @param realPeriodicityTestValue The real part of the z value being tested for a repeat
+         * @param imaginaryPeriodicityTestValue The imaginary part of the z value being tested for a repeat
+         * @param periodicityTestCount The number of iterations tested against that value so far
+         * @param maximumAttemptsToFindRepeats The number of iterations to test against that value
+         */
+        void add(int gridX, int gridY, double realZ, double imaginaryZ, int iterations, double realPeriodicityTestValue,
+                 double imaginaryPeriodicityTestValue, int periodicityTestCount, int maximumAttemptsToFindRepeats)
+        {
+            if (count_ == iterations_.length)
+            {
+                final int capacity = count_ * 2;
+                gridCoordinates_ = Arrays.copyOf(gridCoordinates_, capacity);
+                resolvedCoordinates_ = new int[capacity];
+                realZ_ = Arrays.copyOf(realZ_, capacity);
+                imaginaryZ_ = Arrays.copyOf(imaginaryZ_, capacity);
+                iterations_ = Arrays.copyOf(iterations_, capacity);
+                realPeriodicityTestValue_ = Arrays.copyOf(realPeriodicityTestValue_, capacity);
+                imaginaryPeriodicityTestValue_ = Arrays.copyOf(imaginaryPeriodicityTestValue_, capacity);
+                periodicityTestCount_ = Arrays.copyOf(periodicityTestCount_, capacity);
+                maximumAttemptsToFindRepeats_ = Arrays.copyOf(maximumAttemptsToFindRepeats_, capacity);
+            }
+            gridCoordinates_[count_] = (gridX << 16) | gridY;
+            realZ_[count_] = realZ;
+            imaginaryZ_[count_] = imaginaryZ;
+            iterations_[count_] = iterations;
+            realPeriodicityTestValue_[count_] = realPeriodicityTestValue;
+            imaginaryPeriodicityTestValue_[count_] = imaginaryPeriodicityTestValue;
+            periodicityTestCount_[count_] = periodicityTestCount;
+            maximumAttemptsToFindRepeats_[count_] = maximumAttemptsToFindRepeats;
+            count_++;
+        }
+    }
+
+
+    private void clearUnresolvedPoints()
+    {
+        for (UnresolvedPoints points : unresolvedPoints_)
+        {
+            points.clear();
+        }
+    }
+
+
+    private int countUnresolvedPoints()
+    {
+        int count = 0;
+        for (UnresolvedPoints points : unresolvedPoints_)
+        {
+            count += points.count_;
+        }
+        return count;
+    }
+
+
+    /**
+     * @return The fewest iterations applied to any unresolved point, or zero if there are none.
+     */
+    private int minimumUnresolvedIterations()
+    {
+        int minimum = Integer.MAX_VALUE;
+        for (UnresolvedPoints points : unresolvedPoints_)
+        {
+            for (int index = 0; index < points.count_; ++index)
+            {
+                minimum = Math.min(minimum, points.iterations_[index]);
+            }
+        }
+        return minimum == Integer.MAX_VALUE ? 0 : minimum;
+    }
+
+
+    /**
+     * Resume iterating all the unresolved points of the current level, up to the given budget, in parallel.
+     *
+     * The points of every container are split into fixed size ranges, so the pass balances across the workers however
+     * the points are spread between the containers, e.g. all in the job thread's container after a render server or
+     * speculative frame.  Each range is compacted in place, then the ranges of each container are closed up afterwards.
+     *
+     * @param budget The total number of iterations to apply to each point.
+     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
+     * @param newlyEscapedPoints Where to leave the number of points that escaped within the budget, in the first element.
+     * @return The packed grid coordinates of the points that escaped or were proven inside, none if interrupted.
+     */
+    private int[] deepenUnresolvedPoints(final int budget, final int startingZoomLevel, final int[] newlyEscapedPoints)
+    {
+        int itemCount = 0;
+        for (UnresolvedPoints points : unresolvedPoints_)
+        {
+            itemCount += (points.count_ + deepeningItemPoints_ - 1) / deepeningItemPoints_;
+        }
+
+        // The container and first point of each item, and what is left of it afterwards
+        final UnresolvedPoints[] itemPoints = new UnresolvedPoints[itemCount];
+        final int[] itemStart = new int[itemCount];
+        final int[] itemRemaining = new int[itemCount];
+        final int[] itemEscaped = new int[itemCount];
+        final int[] itemResolved = new int[itemCount];
+        int item = 0;
+        for (UnresolvedPoints points : unresolvedPoints_)
+        {
+            for (int start = 0; start < points.count_; start += deepeningItemPoints_, ++item)
+            {
+                itemPoints[item] = points;
+                itemStart[item] = start;
+            }
+        }
+
+        renderScheduler_.runPass(new ParallelPass(itemCount, deepeningPass_)
+        {
+            @Override
+            long runItem(int item, int worker)
+            {
+                final UnresolvedPoints points = itemPoints[item];
+                final int end = Math.min(points.count_, itemStart[item] + deepeningItemPoints_);
+                return deepenUnresolvedPoints(points, itemStart[item], end, budget, startingZoomLevel, itemRemaining, itemEscaped, itemResolved, item);
+            }
+        }, 0);
+
+        // If the user has "clicked the mouse", the ranges are only part done, and of no use.
+        newlyEscapedPoints[0] = 0;
+        if (currentZoomLevel_ > startingZoomLevel)
+        {
+            return new int[0];
+        }
+
+        int resolvedPoints = 0;
+        for (item = 0; item < itemCount; ++item)
+        {
+            newlyEscapedPoints[0] += itemEscaped[item];
+            resolvedPoints += itemResolved[item];
+        }
+        final int[] resolvedCoordinates = new int[resolvedPoints];
+        resolvedPoints = 0;
+        for (item = 0; item < itemCount; ++item)
+        {
+            System.arraycopy(itemPoints[item].resolvedCoordinates_, itemStart[item], resolvedCoordinates, resolvedPoints, itemResolved[item]);
+            resolvedPoints += itemResolved[item];
+        }
+
+        // Close up the ranges, a container's ranges are in order, and each remainder only moves towards the front.
+        for (UnresolvedPoints points : unresolvedPoints_)
+        {
+            points.count_ = 0;
+        }
+        for (item = 0; item < itemCount; ++item)
+        {
+            itemPoints[item].moveRange(itemStart[item], itemRemaining[item]);
+        }
+        return resolvedCoordinates;
+    }
+
+
+    /**
+     * Resume iterating one range of a container of unresolved points of the current level, up to the given budget.
+     *
+     * Points that escape, or are proven inside the set, are written into the iteration count array, and their
+     * coordinates to the front of the range of resolved coordinates.  The remainder are compacted in place to the front
+     * of the range, ready to be closed up for the next pass.
+     *
+     * The periodicity test carries on from where the previous pass left it.  Most unresolved points are inside the set,
+     * and without the test every one of them would be iterated all the way to the maximum budget.
+     *
+     * @param points The unresolved points.
+     * @param start The first point of the range.
+     * @param end The point after the last point of the range.
+     * @param budget The total number of iterations to apply to each point.
+     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
+     * @param remainingPoints Where to leave the number of points still unresolved.
+     * @param escapedPoints Where to leave the number of points that escaped.
+     * @param resolvedPoints Where to leave the number of points that escaped or were proven inside.
+     * @param item The index of the range into remainingPoints, escapedPoints and resolvedPoints.
+     * @return The number of iterations performed.
+     */
+    private long deepenUnresolvedPoints(final UnresolvedPoints points, final int start, final int end, final int budget, final int startingZoomLevel,
+                                        final int[] remainingPoints, final int[] escapedPoints, final int[] resolvedPoints, final int item)
+    {
+        final double realPixelIncrement = (maximumRealRange_ - minimumRealRange_) / (screenWidth_ - 1);
+        final double imaginaryPixelIncrement = (maximumImaginaryRange_ - minimumImaginaryRange_) / (screenHeight_ - 1);
+
+        final EscapeKernel kernel = new EscapeKernel();
+        long totalIterations = 0;
+        int escapedCount = 0;
+        int resolvedCount = 0;
+        int remaining = start;
+        for (int index = start; index < end; ++index)
+        {
+            // If the user has "clicked the mouse", the remaining points are of no use, nor is compacting them.
+            // Checked for every point, as a single point can take thousands of iterations at the deeper budgets.
+            if (currentZoomLevel_ > startingZoomLevel)
+            {
+                return totalIterations;
+            }
+
+            final int gridX = points.gridCoordinates_[index] >>> 16;
+            final int gridY = points.gridCoordinates_[index] & 0xffff;
+            final double currentReal = minimumRealRange_ + gridX * realPixelIncrement;
+            final double currentImaginary = maximumImaginaryRange_ - gridY * imaginaryPixelIncrement;
+
+            kernel.resume(currentReal, currentImaginary, points.realZ_[index], points.imaginaryZ_[index], points.iterations_[index],
+                    points.realPeriodicityTestValue_[index], points.imaginaryPeriodicityTestValue_[index], points.periodicityTestCount_[index],
+                    points.maximumAttemptsToFindRepeats_[index]);
+            final int outcome = kernel.iterate(budget, true);
+            totalIterations += kernel.iterations_ - points.iterations_[index];
+
+            if (outcome == EscapeKernel.ESCAPED)
+            {
+                points.resolvedCoordinates_[start + resolvedCount++] = points.gridCoordinates_[index];
+                escapedCount++;
+                iterationArray_[gridX][gridY] = kernel.iterations_;
+                magnitudeArray_[gridX][gridY] = (float) kernel.magnitudeSquared_;
+            }
+            else if (outcome == EscapeKernel.PROVEN_INSIDE)
+            {
+                points.resolvedCoordinates_[start + resolvedCount++] = points.gridCoordinates_[index];
+                iterationArray_[gridX][gridY] = -1;
+            }
+            else
+            {
+                points.gridCoordinates_[remaining] = points.gridCoordinates_[index];
+                points.realZ_[remaining] = kernel.realZ_;
+                points.imaginaryZ_[remaining] = kernel.imaginaryZ_;
+                points.iterations_[remaining] = kernel.iterations_;
+                points.realPeriodicityTestValue_[remaining] = kernel.realPeriodicityTestValue_;
+                points.imaginaryPeriodicityTestValue_[remaining] = kernel.imaginaryPeriodicityTestValue_;
+                points.periodicityTestCount_[remaining] = kernel.periodicityTestCount_;
+                points.maximumAttemptsToFindRepeats_[remaining] = kernel.maximumAttemptsToFindRepeats_;
+                remaining++;
+            }
+        }
+        remainingPoints[item] = remaining - start;
+        escapedPoints[item] = escapedCount;
+        resolvedPoints[item] = resolvedCount;
+
+        return totalIterations;
+    }
+
+
+    /**
+     * Used to create a portion of the Mandelbrot set for the current zoom level.
+     *
+     * It is expected to be called repeatedly to calculate all the values for a single level.
+     *
+     * It skips across cells in the iteration count array, calculating whether they are in or out
+     * of the Mandelbrot set.  And then setting their iteration count value to reflect this.
+     * These iteration counts can then be used to create bitmap image.
+     *
+     * The purpose of splitting the calculation into multiple steps is
+     * 1) to allow us to display a one eighth, one quarter and one half version of each zoom level to the user
+     * as soon as the values have been calculated.
+     * 2) to reuse the values from the eighth, quarter, and half levels in the final full scale version.  i.e.  to
+     * not recalculate each scale individually.
+     *
+     * NOTE with an naive full calculation algorithm, the time from a user zoom to actual display on the Android TV
+     * API 25 emulator, with two vcores on a 3GHz Intel i5, with an escape iteration maximum of 1024 and an escape value of 64.0
+     * was about 15 seconds.
+     * On an actual FireStick 2, it was ~700 seconds!  With all the optimizations, progressive rendering, interpolation,
+     * periodicity, this has been reduced to a still ridiculous ~100 seconds.  The current hard coded values of 512 and 2.0
+     * result in a rendering of the final full scale image in about 30 seconds on the FireStick (and 2 seconds on emulator).
+     * Since then the first pass of each level only uses a budget of 128 iterations, and the unresolved points are deepened
+     * afterwards by the DeepeningCreationJob, so the maximum now adapts to the region being viewed.
+     *
+     * Interpolation optimization.  If a pixel is surrounded by the same color on all four sides, we can fill it with the
+     * same color.  We did measure that this was a noticeable performance increase.  We did not measure the error rate though.
+     *
+     * NOTE at present these errors are probably OK as we do not resue the previous level to seed any of the values in
+     * the next zoom level.  However when we introduce that optimization we will need to actually calculate any interpolated
+     * points.
+     *
+     * The extension of this optimization is the area filling optimization that attempts to subset
+     * the image into rectangular areas and if all four sides have the same value, they fill the rectangle with that value.
+     *
+     * NOTE Interpolating is only possible at the finest level.  It also depends on the ordering
+     * of the previous calls to this function, to ensure that the cells on all four sides already have values
+     * assigned to them. i.e The order of pairs in the table driven arrays for starting coordinates matters.
+     *
+     * NOTE The choice of "escape" value, typically 2.0, and the maximum number of iterations to
+     * try before assuming the point is in the Mandelbrot set both have a determination on the "fineness" of the
+     * image.  But, increasing them increases both fineness and runtime.
+     *
+     * Symmetry optimization.  The set is symmetric about the real axis, so when the viewport straddles it, a row whose
+     * conjugate row has already been calculated, by an earlier call to this function, is simply copied.  This nearly
+     * halves the cost of the starting image and of zooms near the axis.
+     *
+     * Periodicity optimization.  If a cell is in the set, the test will iterate to the maximum without the values escaping.
+     * But often the values enter a repeating cycle long before they reach the maximum iteration count.  Testing for these
+     * cycles does actually save iterations.
+     *
+     * NOTE The check for periodicity usually first tests the immediate neighbour to see whether to bother with
+     * a periodicity test at all.  This optimization is intended to avoid unnecessary calculations.
+     * In our case, as we construct the set in jumps of eight pixels, this test would be harder.  At present we simply use
+     * the last pixel created, which is off by seven.  This will not be as optimal.  But runtime metrics showed that we
+     * still avoid many calculations.
+     *
+     * The rows of the subset are split into tiles, which the render scheduler calculates in parallel.  Each row only
+     * depends on cells calculated by previous calls, never by this one, so the tiles are independent.
+     *
+     * The subset is calculated by the current tile source, i.e. on the device, or offloaded to a RenderServer.
+     *
+     * TODO rethink to remove the state parameters and the overall function complexity
+     *
+     * @param startX The starting x offset into the iteration count array
+     * @param startY The starting y offset into the iteration count array
+     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
+     * @param checkForAbort Whether we check for user interruption to stop calculating.
+     */
+    private void createMandelbrotSubset(final int startX, final int startY, final int startingZoomLevel, final boolean checkForAbort, final boolean useInterpolation)
+    {
+        tileSource_.calculateSubset(startX, startY, startingZoomLevel, checkForAbort, useInterpolation);
+    }
+
+
+    /**
+     * Used to create a portion of the Mandelbrot set for the current zoom level on the device.
+     *
+     * See createMandelbrotSubset.
+     *
+     * @param startX The starting x offset into the iteration count array
+     * @param startY The starting y offset into the iteration count array
+     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
+     * @param checkForAbort Whether we check for user interruption to stop calculating.
+     * @param useInterpolation Whether we interpolate cells from their four neighbours.
+     */
+    private void calculateSubsetLocally(final int startX, final int startY, final int startingZoomLevel, final boolean checkForAbort, final boolean useInterpolation)
+    {
+        final int step = 8;
+        final int rows = (screenHeight_ - startY + step - 1) / step;
+        final int tileRows = renderScheduler_.getTileRows();
+        final int mirrorOffset = findMirrorOffset();
+
+        renderScheduler_.runPass(new ParallelPass((rows + tileRows - 1) / tileRows, useInterpolation ? interpolatedSubsetPass_ : subsetPass_)
+        {
+            @Override
+            long runItem(int item, int worker)
+            {
+                final int firstGridY = startY + item * tileRows * step;
+                final int lastGridY = Math.min(screenHeight_, firstGridY + tileRows * step);
+                return createMandelbrotSubsetRows(startX, firstGridY, lastGridY, mirrorOffset, startingZoomLevel, checkForAbort, useInterpolation, unresolvedPoints_[worker]);
+            }
+        }, rows);
+    }
+
+
+    /**
+     * Inner helper class, the tile source that calculates each subset on the device, with the render scheduler.
+     */
+    private class LocalTileSource implements TileSource
+    {
+        @Override
+        public void calculateSubset(int startX, int startY, int startingZoomLevel, boolean checkForAbort, boolean useInterpolation)
+        {
+            calculateSubsetLocally(startX, startY, startingZoomLevel, checkForAbort, useInterpolation);
+        }
+    }
+
+
+    /**
+     * Inner helper class, the tile source that offloads each subset to a RenderServer, e.g. on a desktop on the LAN.
+     *
+     * All the tiles of a subset are requested at once, and the results are written into the view in whatever order
+     * the server finishes them.  The server uses a larger first budget than the device, as it is so much faster, and
+     * returns the z and periodicity test state of its unresolved points, so the DeepeningCreationJob carries on from
+     * where it stopped.
+     *
+     * If the server cannot be reached, or fails or stalls part way through a subset, the missing tiles are calculated
+     * locally.  The server is then retried after a while, rather than on every subset.
+     *
+     * NOTE - only used from the job thread, apart from close.  The remote iterations are not in the frame metrics, nor
+     * the throughput that the render scheduler uses to detect throttling.
+     */
+    private class RemoteTileSource implements TileSource
+    {
+        private final TileClient client_;
+
+        /**
+         * Constructor
+         *
+         * @param host The host name or address of the render server.
+         * @param port The port of the render server.
+         */
+        RemoteTileSource(String host, int port)
+        {
+            client_ = new TileClient(host, port, remoteConnectTimeoutMillis_, remoteReadTimeoutMillis_, remoteRetryNanos_);
+        }
+
+        /**
+         * Stop using the server, any subset in progress is finished locally.
+         *
+         * Intended to be called from the UI thread
+         */
+        void close()
+        {
+            client_.close();
+        }
+
+        /**
+         * Request every tile of the subset from the server, and write each result into the view as it arrives.
+         *
+         * NOTE the rows mirrored about the real axis are still calculated by the server, which is much cheaper than
+         * splitting the tiles around them, but they are copied from their mirror rows here as for a local subset.
+         */
+        @Override
+        public void calculateSubset(int startX, int startY, final int startingZoomLevel, final boolean checkForAbort, boolean useInterpolation)
+        {
+            if (!client_.connect())
+            {
+                logFailure();
+                calculateSubsetLocally(startX, startY, startingZoomLevel, checkForAbort, useInterpolation);
+                return;
+            }
+
+            final int step = 8;
+            final int rows = (screenHeight_ - startY + step - 1) / step;
+            final int tileCount = (rows + remoteTileRows_ - 1) / remoteTileRows_;
+            final int mirrorOffset = findMirrorOffset();
+
+            final TileProtocol.TileRequest[] requests = new TileProtocol.TileRequest[tileCount];
+            final boolean[] received = new boolean[tileCount];
+            for (int tile = 0; tile < tileCount; ++tile)
+            {
+                final TileProtocol.TileRequest request = new TileProtocol.TileRequest();
+                request.minimumRealRange_ = minimumRealRange_;
+                request.maximumRealRange_ = maximumRealRange_;
+                request.minimumImaginaryRange_ = minimumImaginaryRange_;
+                request.maximumImaginaryRange_ = maximumImaginaryRange_;
+                request.screenWidth_ = screenWidth_;
+                request.screenHeight_ = screenHeight_;
+                request.startX_ = startX;
+                request.step_ = step;
+                request.firstGridY_ = startY + tile * remoteTileRows_ * step;
+                request.lastGridY_ = Math.min(screenHeight_, request.firstGridY_ + remoteTileRows_ * step);
+                request.budget_ = remoteTestIterations_;
+                requests[tile] = request;
+            }
+
+            final boolean complete = client_.requestTiles(requests, received, new TileClient.TileListener()
+            {
+                @Override
+                public void onTileResult(int tile, TileProtocol.TileResult result)
+                {
+                    // Once the user has zoomed, the remaining results are of no use.
+                    if (!checkForAbort || currentZoomLevel_ <= startingZoomLevel)
+                    {
+                        applyTileResult(tile, requests[tile], result, mirrorOffset);
+                    }
+                }
+            });
+
+            if (!complete)
+            {
+                logFailure();
+                calculateMissingTilesLocally(requests, received, mirrorOffset, startingZoomLevel, checkForAbort, useInterpolation);
+            }
+        }
+
+        private void logFailure()
+        {
+            final String failure = client_.takeFailure();
+            if (failure != null)
+            {
+                Log.w(TAG, failure + ", calculating locally");
+            }
+        }
+
+        /**
+         * Write the points of one tile into the iteration count array, and keep its unresolved points for deepening.
+         */
+        private void applyTileResult(int tile, TileProtocol.TileRequest request, TileProtocol.TileResult result, int mirrorOffset)
+        {
+            int index = 0;
+            for (int gridY = request.firstGridY_; gridY < request.lastGridY_; gridY += request.step_)
+            {
+                final boolean mirrored = isMirroredRow(request.startX_, gridY, mirrorOffset);
+                final int mirrorY = mirrorOffset - gridY;
+                for (int gridX = request.startX_; gridX < screenWidth_; gridX += request.step_, ++index)
+                {
+                    if (mirrored)
+                    {
+                        iterationArray_[gridX][gridY] = iterationArray_[gridX][mirrorY];
+                        magnitudeArray_[gridX][gridY] = magnitudeArray_[gridX][mirrorY];
+                    }
+                    else
+                    {
+                        iterationArray_[gridX][gridY] = result.iterations_[index];
+                        magnitudeArray_[gridX][gridY] = result.magnitudes_[index];
+                    }
+                }
+            }
+
+            // No pass is running, so any container is free to add to.  Spread the tiles across them, as a local
+            // calculation would.
+            final UnresolvedPoints unresolvedPoints = unresolvedPoints_[tile % unresolvedPoints_.length];
+            final int columns = request.columns();
+            for (int unresolved = 0; unresolved < result.unresolvedCount_; ++unresolved)
+            {
+                final int pointIndex = result.unresolvedIndices_[unresolved];
+                final int gridX = request.startX_ + (pointIndex % columns) * request.step_;
+                final int gridY = request.firstGridY_ + (pointIndex / columns) * request.step_;
+                if (!isMirroredRow(request.startX_, gridY, mirrorOffset))
+                {
+                    // The protocol sends every point that did not escape as -1, the unresolved ones are listed apart
+                    iterationArray_[gridX][gridY] = unresolvedIterationCount_;
+                    unresolvedPoints.add(gridX, gridY, result.unresolvedRealZ_[unresolved], result.unresolvedImaginaryZ_[unresolved],
+                            result.unresolvedIterations_[unresolved], result.unresolvedRealPeriodicityTestValue_[unresolved],
+                            result.unresolvedImaginaryPeriodicityTestValue_[unresolved], result.unresolvedPeriodicityTestCount_[unresolved],
+                            result.unresolvedMaximumAttemptsToFindRepeats_[unresolved]);
+                }
+            }
+        }
+
+        /**
+         * Calculate the tiles that the server did not return on the device, in parallel as for a local subset.
+         */
+        private void calculateMissingTilesLocally(final TileProtocol.TileRequest[] requests, final boolean[] received, final int mirrorOffset,
+                                                  final int startingZoomLevel, final boolean checkForAbort, final boolean useInterpolation)
+        {
+            final List<TileProtocol.TileRequest> missing = new ArrayList<TileProtocol.TileRequest>();
+            for (int tile = 0; tile < requests.length; ++tile)
+            {
+                if (!received[tile])
+                {
+                    missing.add(requests[tile]);
+                }
+            }
+
+            renderScheduler_.runPass(new ParallelPass(missing.size(), useInterpolation ? interpolatedSubsetPass_ : subsetPass_)
+            {
+                @Override
+                long runItem(int item, int worker)
+                {
+                    final TileProtocol.TileRequest request = missing.get(item);
+                    return createMandelbrotSubsetRows(request.startX_, request.firstGridY_, request.lastGridY_, mirrorOffset, startingZoomLevel,
+                            checkForAbort, useInterpolation, unresolvedPoints_[worker]);
+                }
+            }, 0);
+        }
+    }
+
+
+    /**
+     * Used to create one tile of rows of a subset of the Mandelbrot set for the current zoom level.
+     *
+     * See createMandelbrotSubset.
+     *
+     * @param startX The starting x offset into the iteration count array
+     * @param firstGridY The first row of the tile
+     * @param lastGridY The row after the last row of the tile
+     * @param mirrorOffset The sum of each pair of rows mirrored about the real axis, or -1 if they are not aligned.
+     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
+     * @param checkForAbort Whether we check for user interruption to stop calculating.
+     * @param useInterpolation Whether we interpolate cells from their four neighbours.
+     * @param unresolvedPoints The container for this worker's unresolved points.
+     * @return The number of iterations performed.
+     */
+    private long createMandelbrotSubsetRows(final int startX, final int firstGridY, final int lastGridY, final int mirrorOffset, final int startingZoomLevel,
+                                            final boolean checkForAbort, final boolean useInterpolation, final UnresolvedPoints unresolvedPoints)
+    {
+        final int step = 8;
+        final double realPixelIncrement = (maximumRealRange_ - minimumRealRange_) / (screenWidth_ - 1);
+        final double imaginaryPixelIncrement = (maximumImaginaryRange_ - minimumImaginaryRange_) / (screenHeight_ - 1);
+
+        // Used to allow early aborting of the algorithm, when the calculations are no longer needed due to user zooming.
+        boolean userInterruption = false;
+        // Used to measure the throughput
+        long totalIterations = 0;
+        final EscapeKernel kernel = new EscapeKernel();
+
+        for (int gridY = firstGridY; gridY < lastGridY && ! userInterruption; gridY += step)
+        {
+            // If the conjugate row has already been calculated, copy it rather than calculating this one
+            if (isMirroredRow(startX, gridY, mirrorOffset))
+            {
+                final int mirrorY = mirrorOffset - gridY;
+                for (int gridX = startX; gridX < screenWidth_; gridX += step)
+                {
+                    iterationArray_[gridX][gridY] = iterationArray_[gridX][mirrorY];
+                    magnitudeArray_[gridX][gridY] = magnitudeArray_[gridX][mirrorY];
+                }
+                continue;
+            }
+
+            // The value on the imaginary axis for this pixel
+            final double currentImaginary = maximumImaginaryRange_ - gridY * imaginaryPixelIncrement;
+
+            // Used to optimize periodicity tests.
+            boolean previousPixelWasInsideTheSet = false;
+
+            for (int gridX = startX; gridX < screenWidth_; gridX += step)
+            {
+                // Possible value interpolation for this cell in the iteration count array
+                boolean skipDueToInterpolating = false;
+
+                // At the finest level, i.e. when all the other iteration count calculations are complete, it is an optimization to
+                // interpolate the values for pixels where all four neighbours are the same color
+                if (useInterpolation)
+                {
+                    // If not the top or bottom row
+                    if (gridY > 0 && gridY < screenHeight_ - 1)
+                    {
+                        // If not the left or right column
+                        if (gridX > 0 && gridX < screenWidth_ - 1)
+                        {
+                            final int left = iterationArray_[gridX - 1][gridY];
+                            final int right = iterationArray_[gridX + 1][gridY];
+                            final int above = iterationArray_[gridX][gridY - 1];
+                            final int below = iterationArray_[gridX][gridY + 1];
+                            if (left < 0 && right < 0 && above < 0 && below < 0)
+                            {
+                                // Surrounded by the inside of the set, or by points that may be.  If all four are proven
+                                // inside, so is this one.  Otherwise it is only assumed inside within the initial budget,
+                                // so deepen it from scratch later.
+                                skipDueToInterpolating = true;
+                                if (left == -1 && right == -1 && above == -1 && below == -1)
+                                {
+                                    iterationArray_[gridX][gridY] = -1;
+                                }
+                                else
+                                {
+                                    iterationArray_[gridX][gridY] = unresolvedIterationCount_;
+                                    final double currentReal = minimumRealRange_ + gridX * realPixelIncrement;
+                                    unresolvedPoints.add(gridX, gridY, currentReal, currentImaginary, 0);
+                                }
+                            }
+                            else if (left == right)
+                            {
+                                if (above == left)
+                                {
+                                    if (below == left)
+                                    {
+                                        // If cells on all four sides are the same, assume this one is the same
+                                        iterationArray_[gridX][gridY] = left;
+                                        magnitudeArray_[gridX][gridY] = magnitudeArray_[gridX - 1][gridY];
+                                        skipDueToInterpolating = true;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+
+                if (!skipDueToInterpolating)
+                {
+                    // The value on the real axis for this pixel
+                    final double currentReal = minimumRealRange_ + gridX * realPixelIncrement;
+
+                    // For this pixel/point, iterate over the mapped real and imaginary values, until either the
+                    // values "escape" or the pixel is assumed to be in the Mandelbrot set.
+                    // Only bother to test a pixel/cell for periodicity if the previous one was in the set.
+                    kernel.start(currentReal, currentImaginary);
+                    final int outcome = kernel.iterate(initialTestIterations_, previousPixelWasInsideTheSet);
+                    totalIterations += kernel.iterations_;
+
+                    // Set the iteration count array value for this point.
+                    if (outcome != EscapeKernel.ESCAPED)
+                    {
+                        previousPixelWasInsideTheSet = true;
+                        // Only inside within the initial budget, so keep the z and periodicity test state for deepening later.
+                        if (outcome == EscapeKernel.UNRESOLVED)
+                        {
+                            iterationArray_[gridX][gridY] = unresolvedIterationCount_;
+                            unresolvedPoints.add(gridX, gridY, kernel.realZ_, kernel.imaginaryZ_, kernel.iterations_, kernel.realPeriodicityTestValue_,
+                                    kernel.imaginaryPeriodicityTestValue_, kernel.periodicityTestCount_, kernel.maximumAttemptsToFindRepeats_);
+                        }
+                        else
+                        {
+                            iterationArray_[gridX][gridY] = -1;
+                        }
+                    }
+                    else
+                    {
+                        previousPixelWasInsideTheSet = false;
+                        iterationArray_[gridX][gridY] = kernel.iterations_;
+                        // Record the final |z|^2 for smooth coloring, costs no extra iterations.
+                        magnitudeArray_[gridX][gridY] = (float) kernel.magnitudeSquared_;
+                    }
+                }
+
+                // If the user has "clicked the mouse" the current zoom will have changed, maybe we no longer
+                // need to keep calculating.
+                if (checkForAbort && (currentZoomLevel_ > startingZoomLevel))
+                {
+                    userInterruption = true;
+                }
+            }
+        }
+
+        return totalIterations;
+    }
+
+
+    /**
+     * Find whether the current viewport overlaps its own conjugate, with whole pixel rows mirrored about the real axis.
+     *
+     * The point on row y has the conjugate imaginary value of the point on row (offset - y).  That only holds exactly
+     * when the offset is a whole number, otherwise the rows fall between each other and all of them are calculated.
+     * The starting viewport is aligned, and zooming at whole pixels keeps it aligned.
+     *
+     * @return The sum of each pair of mirrored rows, or -1 if the viewport does not straddle the real axis on whole rows.
+     */
+    private int findMirrorOffset()
+    {
+        final double imaginaryPixelIncrement = (maximumImaginaryRange_ - minimumImaginaryRange_) / (screenHeight_ - 1);
+        final double offset = 2.0 * maximumImaginaryRange_ / imaginaryPixelIncrement;
+        final double wholeOffset = Math.rint(offset);
+        if (wholeOffset <= 0.0 || wholeOffset >= 2.0 * (screenHeight_ - 1) || Math.abs(offset - wholeOffset) > mirrorTolerance_)
+        {
+            return -1;
+        }
+        return (int) wholeOffset;
+    }
+
+
+    /**
+     * Whether a row of a subset is copied from its mirror row, i.e. the mirror row exists and is calculated earlier.
+     *
+     * Only rows of an earlier subset are mirrored, never rows of the same subset, as those may be calculated in
+     * parallel.
+     *
+     * @param startX The starting x offset of the subset
+     * @param gridY The row
+     * @param mirrorOffset The sum of each pair of mirrored rows, or -1 if they are not aligned.
+     * @return Whether the row is a copy of its mirror row.
+     */
+    private boolean isMirroredRow(final int startX, final int gridY, final int mirrorOffset)
+    {
+        final int mirrorY = mirrorOffset - gridY;
+        return mirrorOffset >= 0 && mirrorY >= 0 && mirrorY < screenHeight_
+                && subsetCalculationOrder_[startX][mirrorY % 8] < subsetCalculationOrder_[startX][gridY % 8];
+    }
+
+
+    /**
+     * Copy the points resolved in a deepening pass into their mirrored points, if those are copies of them.
+     *
+     * NOTE - mirrored points are never unresolved themselves, only their mirror points are.
+     *
+     * @param resolvedCoordinates The packed grid coordinates of the points that escaped or were proven inside.
+     * @return The packed grid coordinates of the resolved points, followed by those of the mirrored points copied.
+     */
+    private int[] mirrorResolvedPoints(final int[] resolvedCoordinates)
+    {
+        final int mirrorOffset = findMirrorOffset();
+        if (mirrorOffset < 0)
+        {
+            return resolvedCoordinates;
+        }
+
+        final int[] changedCoordinates = Arrays.copyOf(resolvedCoordinates, resolvedCoordinates.length * 2);
+        int changedPoints = resolvedCoordinates.length;
+        for (int coordinates : resolvedCoordinates)
+        {
+            final int gridX = coordinates >>> 16;
+            final int gridY = coordinates & 0xffff;
+            final int mirrorY = mirrorOffset - gridY;
+            if (mirrorY >= 0 && mirrorY < screenHeight_ && isMirroredRow(gridX % 8, mirrorY, mirrorOffset))
+            {
+                iterationArray_[gridX][mirrorY] = iterationArray_[gridX][gridY];
+                magnitudeArray_[gridX][mirrorY] = magnitudeArray_[gridX][gridY];
+                changedCoordinates[changedPoints++] = (gridX << 16) | mirrorY;
+            }
+        }
+        return Arrays.copyOf(changedCoordinates, changedPoints);
+    }
+
+
+    /**
+     * Inner helper base class for a pass that the render scheduler runs in parallel.
+     *
+     * The pass is split into independent items, e.g. tiles of rows, that the workers claim in turn.  The progress and
+     * measurements of the pass are kept with it, as a priority pass can run while another pass is in progress.  A pass
+     * can be run again once it has finished, e.g. the colorize stage runs the same pass every time.
+     */
+    private abstract class ParallelPass
+    {
+        // The number of items in the pass
+        protected final int itemCount_;
+        // The kind of pass, e.g. subsetPass_, used to compare its throughput with the same kind of pass
+        protected final int passType_;
+
+        // Reset by the render scheduler each time the pass is run
+        private volatile int workers_;
+        private volatile boolean priority_;
+        private final AtomicInteger nextItem_ = new AtomicInteger();
+        private final AtomicInteger completedItems_ = new AtomicInteger();
+        private final AtomicLong iterations_ = new AtomicLong();
+        private final AtomicLong busyNanos_ = new AtomicLong();
+        private final AtomicLong cpuNanos_ = new AtomicLong();
+        private volatile boolean cpuNanosUnsupported_;
+
+        /**
+         * Constructor
+         *
+         * @param itemCount The number of items in the pass.
+         * @param passType The kind of pass.
+         */
+        ParallelPass(int itemCount, int passType)
+        {
+            itemCount_ = itemCount;
+            passType_ = passType;
+        }
+
+        /**
+         * Calculate one item of the pass.
+         *
+         * @param item The item to calculate.
+         * @param worker The worker calculating it, used to pick per worker containers.
+         * @return The number of iterations performed, used to measure the throughput.
+         */
+        abstract long runItem(int item, int worker);
+
+        /**
+         * Ready the pass to be run, only called while no thread is working on it.
+         *
+         * @param workers The number of workers that may take part.
+         * @param priority Whether it is a priority pass.
+         */
+        private void reset(int workers, boolean priority)
+        {
+            workers_ = workers;
+            priority_ = priority;
+            nextItem_.set(0);
+            completedItems_.set(0);
+            iterations_.set(0);
+            busyNanos_.set(0);
+            cpuNanos_.set(0);
+            cpuNanosUnsupported_ = false;
+        }
+
+        private boolean hasUnclaimedItems()
+        {
+            return nextItem_.get() < itemCount_;
+        }
+    }
+
+
+    /**
+     * Inner helper class that runs the passes of the jobs in parallel, adapting to the device as it goes.
+     *
+     * The job thread is always worker zero, the other workers wait on a monitor between passes, so nothing spins
+     * while there is no work.  Each pass is split into items, which the active workers claim in turn.  This is the only
+     * pool of threads, the colorize stage runs its bands on it too.  A color cycle frame from the UI thread is run as a
+     * priority pass, whose items the other workers take before their next item of the job thread's pass, so it is not
+     * held up until a long calculation pass finishes.
+     *
+     * The throughput of each pass, in iterations per nanosecond of worker CPU time, is compared with the best recently
+     * seen for the same kind of pass and number of workers.  CPU time rather than wall clock time, so a worker that is
+     * waiting for a core, e.g. behind a color cycle frame or another process, or a pass whose last items leave some
+     * workers idle, does not look slow.  Only a drop in the speed of the cores themselves counts.  On the FireStick a
+     * sustained drop is the signature of thermal throttling, so a worker is dropped, and only added back after a while,
+     * to probe whether the device has cooled down.  The number of rows in a tile is adapted so that each tile takes
+     * roughly a fixed time.
+     *
+     * The CPU time of every stage of each frame, i.e. zoom level, is kept as an energy proxy, so the best number of
+     * workers can be chosen per device model.  That is the job thread's whole CPU time from the first job of the level
+     * to the end of deepening, the other workers' items of its passes, including colorizing, and the work done for the
+     * level before it starts, i.e. erasing the iteration counts on the UI thread and any speculative rendering.
+     *
+     * NOTE - the throttling and tile size state is only used by the job thread.
+     */
+    private class RenderScheduler
+    {
+        // The number of workers, including the job thread
+        private final int maximumWorkers_;
+        // The number of workers used for the next pass, adapted to throttling
+        private volatile int activeWorkers_;
+        // The number of rows in a tile, adapted to the throughput
+        private volatile int tileRows_ = 4;
+
+        // Used to hand the passes to the worker threads, and to wait for them to finish
+        private final Object passLock_ = new Object();
+        // The job thread's pass, while it has unclaimed items
+        private ParallelPass pass_ = null;
+        // A priority pass from another thread, read without the lock between items
+        private volatile ParallelPass priorityPass_ = null;
+
+        // Throttling detection, by kind of pass, then number of workers
+        private final double[][] peakThroughput_;
+        private final double[] averageThroughput_ = new double[passTypes_];
+        private int slowPasses_ = 0;
+        private long lastWorkerChangeNanos_ = System.nanoTime();
+        private int throttleEvents_ = 0;
+
+        // Frame metrics
+        // The CPU time of the other workers on the job thread's passes, the job thread's own is measured over the frame
+        private final AtomicLong frameCpuNanos_ = new AtomicLong();
+        // The CPU time spent for the next frame before it starts, e.g. erasing the iteration counts
+        private final AtomicLong nextFrameCpuNanos_ = new AtomicLong();
+        private long frameStartNanos_ = System.nanoTime();
+        private long frameStartCpuNanos_ = -1;
+        private long frameIterations_ = 0;
+        private volatile RenderMetrics lastFrameMetrics_ = null;
+
+        /**
+         * Constructor, starts the worker threads.
+         *
+         * @param maximumWorkers The maximum number of workers, usually the number of processors.
+         */
+        RenderScheduler(int maximumWorkers)
+        {
+            maximumWorkers_ = Math.max(1, maximumWorkers);
+            activeWorkers_ = maximumWorkers_;
+            peakThroughput_ = new double[passTypes_][maximumWorkers_ + 1];
+            for (int worker = 1; worker < maximumWorkers_; ++worker)
+            {
+                final int workerId = worker;
+                Thread thread = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        runWorker(workerId);
+                    }
+                }, "render-" + worker);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        int getTileRows()
+        {
+            return tileRows_;
+        }
+
+        RenderMetrics getLastFrameMetrics()
+        {
+            return lastFrameMetrics_;
+        }
+
+        /**
+         * Run a pass across the active workers, and adapt to its throughput.
+         *
+         * Intended to be called from the job thread, which takes part as worker zero.
+         *
+         * @param pass The pass to run.
+         * @param rows The number of rows in the pass, used to size the tiles, or zero if it is not split by rows.
+         */
+        void runPass(ParallelPass pass, int rows)
+        {
+            final int workers = activeWorkers_;
+            pass.reset(workers, false);
+            synchronized (passLock_)
+            {
+                pass_ = pass;
+                passLock_.notifyAll();
+            }
+
+            final long startNanos = System.nanoTime();
+            runItems(pass, 0);
+            synchronized (passLock_)
+            {
+                // Every item has been claimed, the other workers only need to finish theirs
+                pass_ = null;
+            }
+            waitForPass(pass);
+
+            final long cpuNanos = pass.cpuNanosUnsupported_ ? -1 : pass.cpuNanos_.get();
+            adapt(pass.passType_, workers, rows, pass.iterations_.get(), System.nanoTime() - startNanos, pass.busyNanos_.get(), cpuNanos);
+        }
+
+        /**
+         * Run a short pass from a thread other than the job thread, e.g. a color cycle frame on the UI thread.
+         *
+         * The calling thread takes part, and the other active workers take its items before their next item of the job
+         * thread's pass, if there is one.  The job thread does not take part, as all of its CPU time is counted for the
+         * frame.  A priority pass is neither adapted to, nor counted in the frame metrics.
+         *
+         * NOTE - only one priority pass may run at a time, the caller must make sure of that.
+         *
+         * @param pass The pass to run.
+         */
+        void runPriorityPass(ParallelPass pass)
+        {
+            pass.reset(activeWorkers_, true);
+            synchronized (passLock_)
+            {
+                priorityPass_ = pass;
+                passLock_.notifyAll();
+            }
+
+            runItems(pass, -1);
+            synchronized (passLock_)
+            {
+                priorityPass_ = null;
+            }
+            waitForPass(pass);
+        }
+
+        /**
+         * Wait for the other workers to finish the items of a pass that they claimed.
+         *
+         * @param pass The pass, all of whose items have been claimed.
+         */
+        private void waitForPass(ParallelPass pass)
+        {
+            boolean interrupted = false;
+            synchronized (passLock_)
+            {
+                // The workers write into the shared arrays, so always wait for them, even if interrupted.
+                while (pass.completedItems_.get() < pass.itemCount_)
+                {
+                    try
+                    {
+                        passLock_.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Worker thread loop, takes part in each pass if it is one of the active workers.
+         *
+         * @param worker The id of this worker.
+         */
+        private void runWorker(int worker)
+        {
+            while (true)
+            {
+                ParallelPass pass;
+                synchronized (passLock_)
+                {
+                    while ((pass = findPass(worker)) == null)
+                    {
+                        try
+                        {
+                            passLock_.wait();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            return;
+                        }
+                    }
+                }
+                runItems(pass, worker);
+            }
+        }
+
+        /**
+         * Find a pass for a worker to take part in, the priority pass first.  Called with the pass lock held.
+         *
+         * @param worker The id of the worker.
+         * @return The pass, or null if there are no items the worker can claim.
+         */
+        private ParallelPass findPass(int worker)
+        {
+            final ParallelPass priorityPass = priorityPass_;
+            if (priorityPass != null && worker < priorityPass.workers_ && priorityPass.hasUnclaimedItems())
+            {
+                return priorityPass;
+            }
+            if (pass_ != null && worker < pass_.workers_ && pass_.hasUnclaimedItems())
+            {
+                return pass_;
+            }
+            return null;
+        }
+
+        /**
+         * Claim and calculate items of the pass until there are none left, taking the items of any priority pass first.
+         *
+         * @param pass The pass being run.
+         * @param worker The id of this worker, or -1 for the thread that started a priority pass.
+         */
+        private void runItems(ParallelPass pass, int worker)
+        {
+            while (true)
+            {
+                // Neither the job thread, nor the thread that started it, takes the items of a priority pass here
+                final ParallelPass priorityPass = priorityPass_;
+                if (priorityPass != null && priorityPass != pass && worker > 0 && worker < priorityPass.workers_)
+                {
+                    runItems(priorityPass, worker);
+                }
+
+                final int item = pass.nextItem_.getAndIncrement();
+                if (item >= pass.itemCount_)
+                {
+                    return;
+                }
+                runItem(pass, item, worker);
+            }
+        }
+
+        /**
+         * Calculate one item of a pass, and measure it.
+         *
+         * @param pass The pass being run.
+         * @param item The item to calculate.
+         * @param worker The id of this worker, or -1 for the thread that started a priority pass.
+         */
+        private void runItem(ParallelPass pass, int item, int worker)
+        {
+            final long startCpuNanos = Debug.threadCpuTimeNanos();
+            final long startNanos = System.nanoTime();
+            pass.iterations_.addAndGet(pass.runItem(item, worker));
+            pass.busyNanos_.addAndGet(System.nanoTime() - startNanos);
+
+            // Not all devices support thread CPU time, -1 if not
+            if (startCpuNanos >= 0)
+            {
+                final long cpuNanos = Debug.threadCpuTimeNanos() - startCpuNanos;
+                pass.cpuNanos_.addAndGet(cpuNanos);
+                // The job thread's CPU time is measured over the whole frame, including its work between passes
+                if (!pass.priority_ && worker > 0)
+                {
+                    frameCpuNanos_.addAndGet(cpuNanos);
+                }
+            }
+            else
+            {
+                pass.cpuNanosUnsupported_ = true;
+            }
 
-                    // For this pixel/point, iterate over the mapped real and imaginary values, until either the
-                    // values "escape" or the pixel is assumed to be in the Mandelbrot set.
-                    for (iterations = 0; iterations < maximumTestIterations_; ++iterations)
-                    {
-                        // Use minimum multiplications per test iteration
-                        final double realZSquared = realZ * realZ;
-                        final double imaginaryZSquared = imaginaryZ * imaginaryZ;
-                        if (realZSquared + imaginaryZSquared > escapeValueSquared_)
-                        {
-                            insideTheSet = false;
-                            break;
-                        }
+            if (pass.completedItems_.incrementAndGet() == pass.itemCount_)
+            {
+                synchronized (passLock_)
+                {
+                    passLock_.notifyAll();
+                }
+            }
+        }
 
-                        // Calculate next test values
-                        imaginaryZ = 2 * realZ * imaginaryZ + currentImaginary;
-                        realZ = realZSquared - imaginaryZSquared + currentReal;
+        /**
+         * Adapt the tile size and number of workers to the throughput of the pass that just finished.
+         *
+         * @param passType The kind of pass.
+         * @param workers The number of workers that ran the pass.
+         * @param rows The number of rows in the pass, or zero if it was not split by rows.
+         * @param iterations The number of iterations performed by the pass.
+         * @param elapsedNanos The wall clock time the pass took.
+         * @param busyNanos The total wall clock time the workers spent calculating items of the pass.
+         * @param cpuNanos The total CPU time the workers spent calculating items of the pass, or -1 if not supported.
+         */
+        private void adapt(int passType, int workers, int rows, long iterations, long elapsedNanos, long busyNanos, long cpuNanos)
+        {
+            frameIterations_ += iterations;
+            if (elapsedNanos <= 0 || busyNanos <= 0)
+            {
+                return;
+            }
 
-                        // Only bother to test a pixel/cell for periodicity if the previous one was in the set.
-                        if (previousPixelWasInsideTheSet)
-                        {
-                            // NOTE comparison operator on floating point values actually works adequately here.
-                            if (realZ == realPeriodicityTestValue)
-                            {
-                                if (imaginaryZ == imaginaryPeriodicityTestValue)
-                                {
-                                    iterations = maximumTestIterations_;
-                                    break;
-                                }
-                            }
+            if (rows > 0)
+            {
+                final long nanosPerRow = Math.max(1, elapsedNanos * workers / rows);
+                tileRows_ = (int) Math.max(1, Math.min(maximumTileRows_, targetTileNanos_ / nanosPerRow));
+            }
 
-                            currentPeriodicityTestCount++;
+            // Mostly interpolated, or interrupted, passes are too short to tell us anything
+            if (iterations < minimumIterationsForThroughput_)
+            {
+                return;
+            }
 
-                            // If we believe that this pixel is likely be in the set, and we haven't found values that repeat yet,
-                            // then double the number of steps before resetting the test values.
-                            if (currentPeriodicityTestCount > maximumAttemptsToFindRepeats)
-                            {
-                                currentPeriodicityTestCount = 0;
-                                maximumAttemptsToFindRepeats *= 2;
-                                realPeriodicityTestValue = realZ;
-                                imaginaryPeriodicityTestValue = imaginaryZ;
-                            }
-                        }
-                    }
+            // Busy time also counts the time a worker was preempted, so it is only a fallback
+            final double throughput = (double) iterations / (cpuNanos > 0 ? cpuNanos : busyNanos);
+            final double average = averageThroughput_[passType] == 0.0 ? throughput : averageThroughput_[passType] * 0.75 + throughput * 0.25;
+            averageThroughput_[passType] = average;
+            final double[] peakThroughput = peakThroughput_[passType];
+            peakThroughput[workers] *= peakThroughputDecay_;
+            if (average > peakThroughput[workers])
+            {
+                peakThroughput[workers] = average;
+                slowPasses_ = 0;
+            }
+            else if (average < throttleRatio_ * peakThroughput[workers])
+            {
+                slowPasses_++;
+            }
+            else
+            {
+                slowPasses_ = 0;
+            }
 
-                    // Set the iteration count array value for this point.
-                    if (insideTheSet)
-                    {
-                        previousPixelWasInsideTheSet = true;
-                        iterationArray_[gridX][gridY] = -1;
-                    }
-                    else
-                    {
-                        previousPixelWasInsideTheSet = false;
-                        iterations = iterations < maximumTestIterations_ ? iterations : maximumTestIterations_;
-                        iterationArray_[gridX][gridY] = iterations;
-                    }
-                }
+            final long nowNanos = System.nanoTime();
+            if (slowPasses_ >= throttlePassCount_ && workers > 1)
+            {
+                throttleEvents_++;
+                Log.i(TAG, "Throughput dropped to " + average + " iterations/ns, backing off to " + (workers - 1) + " workers");
+                setActiveWorkers(workers - 1, nowNanos);
+            }
+            else if (slowPasses_ == 0 && workers < maximumWorkers_ && nowNanos - lastWorkerChangeNanos_ > workerRecoveryNanos_)
+            {
+                // Probe whether the device has cooled down, a throttled device will back off again
+                setActiveWorkers(workers + 1, nowNanos);
+            }
+        }
 
-                // If the user has "clicked the mouse" the current zoom will have changed, maybe we no longer
-                // need to keep calculating.
-                if (checkForAbort && (currentZoomLevel_ > startingZoomLevel))
-                {
-                    userInterruption = true;
-                }
+        private void setActiveWorkers(int workers, long nowNanos)
+        {
+            activeWorkers_ = workers;
+            Arrays.fill(averageThroughput_, 0.0);
+            slowPasses_ = 0;
+            lastWorkerChangeNanos_ = nowNanos;
+        }
+
+        /**
+         * Count CPU time spent for the next frame before it starts, e.g. erasing the iteration counts.
+         *
+         * May be called from any thread.
+         *
+         * @param cpuNanos The CPU time, in nanoseconds.
+         */
+        void addNextFrameCpuNanos(long cpuNanos)
+        {
+            nextFrameCpuNanos_.addAndGet(cpuNanos);
+        }
+
+        /**
+         * Start measuring a frame, called by the first job of each level, on the job thread.
+         */
+        void startFrame()
+        {
+            frameStartNanos_ = System.nanoTime();
+            frameStartCpuNanos_ = Debug.threadCpuTimeNanos();
+            frameCpuNanos_.set(nextFrameCpuNanos_.getAndSet(0));
+            frameIterations_ = 0;
+        }
+
+        /**
+         * Finish measuring a frame, called by the last job of each level, on the job thread, if it was not interrupted.
+         */
+        void endFrame()
+        {
+            long cpuNanos = frameCpuNanos_.get();
+            if (frameStartCpuNanos_ >= 0)
+            {
+                cpuNanos += Debug.threadCpuTimeNanos() - frameStartCpuNanos_;
             }
+            lastFrameMetrics_ = new RenderMetrics((System.nanoTime() - frameStartNanos_) / 1e9, cpuNanos / 1e9,
+                    frameIterations_, activeWorkers_, tileRows_, throttleEvents_);
+            Log.i(TAG, lastFrameMetrics_.toString());
+        }
+    }
+
+
+    /**
+     * The measurements of the latest completely calculated frame, i.e. zoom level, and of the render scheduler.
+     *
+     * The CPU seconds per frame is an energy proxy, comparing it across numbers of workers shows the best
+     * parallelism for a device model.
+     */
+    public static final class RenderMetrics
+    {
+        // Wall clock time from the zoom to the end of deepening
+        public final double frameSeconds;
+        // CPU time of every stage of the frame, on all threads, i.e. calculating, colorizing, mirroring and erasing
+        public final double cpuSecondsPerFrame;
+        // Iterations performed for the frame
+        public final long iterationsPerFrame;
+        // Current number of calculation workers, reduced when throttling is detected
+        public final int activeWorkers;
+        // Current number of rows per tile
+        public final int tileRows;
+        // Number of times throttling has been detected since start up
+        public final int throttleEvents;
+
+        RenderMetrics(double frameSeconds, double cpuSecondsPerFrame, long iterationsPerFrame, int activeWorkers, int tileRows, int throttleEvents)
+        {
+            this.frameSeconds = frameSeconds;
+            this.cpuSecondsPerFrame = cpuSecondsPerFrame;
+            this.iterationsPerFrame = iterationsPerFrame;
+            this.activeWorkers = activeWorkers;
+            this.tileRows = tileRows;
+            this.throttleEvents = throttleEvents;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Frame " + frameSeconds + "s, " + cpuSecondsPerFrame + " CPU s, " + iterationsPerFrame + " iterations, "
+                    + activeWorkers + " workers, " + tileRows + " rows per tile, " + throttleEvents + " throttle events";
         }
     }
 
@@ -695,38 +2810,325 @@ public class MandelbrotView extends View
      * So, a step of eight would render each eighth pixel.  The resulting bitmap would then
      * be expected to be scaled up to the screen size.
      *
-     * The color for each pixel is based on the mapping from the iteration count to a color palette.
-     * Pixels that are inside the set are colored black.
+     * The actual coloring is done by the colorize stage, so it can be re-run on its own.
      *
-     * @param offscreenBitmap The bitmap to draw into, needs to match the step size.
+     * @param bitmapPair The pair of bitmaps to draw into, needs to match the step size.
      * @param step The step to use when iterating across and down the iteration count array.
+     * @return The one of the pair drawn into.
+     */
+    private Bitmap renderLevelByStep(Bitmap[] bitmapPair, int step)
+    {
+        return colorizeStage_.colorize(bitmapPair, step);
+    }
+
+
+    /**
+     * Inner helper class that maps the iteration count array into a bitmap, i.e. the colorize stage.
+     *
+     * The iteration count array is the source of truth.  So palette swaps, palette cycling and iteration clamps only
+     * re-run this stage over it, they never recalculate.  That needs to be fast enough to run every display frame, so
+     * the rows are split into one band per processor and colored in parallel on the render scheduler, into a single
+     * preallocated pixel buffer.  Nothing is allocated per pass.
+     *
+     * The color for each pixel is based on the mapping from the normalized iteration count to the high resolution
+     * palette lookup table.  The fractional part of the count comes from the final |z|^2 via the smoothing table,
+     * so there are no transcendental calls per pixel.
+     * Pixels that are inside the set, or are beyond the display iteration clamp, are colored black.
+     *
+     * The palette index of each pixel only changes when the iteration counts do, so it is worked out once per render,
+     * into a row major buffer of codes, packing the iteration count above the palette index.  Re-coloring for a palette
+     * cycle or clamp is then just an add and a table lookup per pixel, reading the codes in order.  After a deepening
+     * pass, only the codes and pixels of the points that escaped are updated.
+     *
+     * Each pass is copied into whichever of a pair of bitmaps is not on screen, to be swapped in, so the bitmap being
+     * displayed is never written to.  The job thread and the UI thread take turns, the UI thread skipping a re-color
+     * rather than waiting while the job thread colors.
+     *
+     * NOTE - this class makes use of the outer class iteration count and palette data.
      */
-    private void renderLevelByStep(Bitmap offscreenBitmap, int step)
+    private class ColorizeStage
     {
-        final Canvas offscreenCanvas = new Canvas(offscreenBitmap);
-        final int bitmapWidth = offscreenBitmap.getWidth();
-        final int bitmapHeight = offscreenBitmap.getHeight();
+        // Number of bands the rows are split into, one per worker
+        private final int numberOfBands_;
+        // The colored pixels, copied into the bitmap in one call at the end of each pass
+        private final int[] pixelBuffer_ = new int[screenWidth_ * screenHeight_];
+        // The iteration count << paletteIndexBits_ | palette index of each pixel, or -1 inside the set, by row
+        private final int[] paletteCodeBuffer_ = new int[screenWidth_ * screenHeight_];
+        // The step the palette codes were last worked out for, zero if never
+        private int indexedStep_ = 0;
+        // Colors one band per item, run again for every pass
+        private final ParallelPass bandPass_;
+        // Held for each pass, and while the codes or pixels are updated.  The UI thread only tries it, never waits.
+        private final ReentrantLock lock_ = new ReentrantLock();
+
+        // The parameters of the current pass, or the last, which the pixel buffer holds, only written while no pass is running
+        private int passStep_;
+        private int passWidth_;
+        private int passHeight_;
+        private int[] passLookupTable_;
+        private int passOffset_;
+        private int passClamp_;
+        private boolean passReindex_;
 
-        for (int bitmapY = 0; bitmapY < bitmapHeight; ++bitmapY)
+        /**
+         * Constructor
+         *
+         * @param numberOfBands The number of bands to color in parallel, usually the number of processors.
+         */
+        ColorizeStage(int numberOfBands)
         {
-            final int gridY = bitmapY * step;
-            for (int bitmapX = 0; bitmapX < bitmapWidth; ++bitmapX)
+            numberOfBands_ = Math.max(1, numberOfBands);
+            bandPass_ = new ParallelPass(numberOfBands_, colorizePass_)
             {
-                final int gridX = bitmapX * step;
-                int iterations = iterationArray_[gridX][gridY];
-                if (iterations == -1)
+                @Override
+                long runItem(int item, int worker)
                 {
-                    offscreenCanvas.drawPoint(bitmapX, bitmapY, paintBlack_);
+                    colorizeBand(item);
+                    return 0;
                 }
-                else
+            };
+        }
+
+        /**
+         * Work out the palette codes of the whole iteration count array, then color it into the bitmap not on screen.
+         *
+         * Intended to be called from the job thread, after calculating.
+         *
+         * @param bitmapPair The pair of bitmaps to draw into, needs to match the step size.
+         * @param step The step to use when iterating across and down the iteration count array.
+         * @return The one of the pair drawn into.
+         */
+        Bitmap colorize(Bitmap[] bitmapPair, int step)
+        {
+            lock_.lock();
+            try
+            {
+                return colorizePass(bitmapPair, step, true);
+            }
+            finally
+            {
+                lock_.unlock();
+            }
+        }
+
+        /**
+         * Color the iteration count array into the bitmap not on screen, using the current palette, offset and clamp,
+         * unless the job thread is coloring.
+         *
+         * Intended to be called from the UI thread, which would rather skip a frame than wait.
+         *
+         * @param bitmapPair The pair of bitmaps to draw into, needs to match the step size.
+         * @param step The step to use when iterating across and down the iteration count array.
+         * @return The one of the pair drawn into, or null if the job thread was coloring.
+         */
+        Bitmap recolor(Bitmap[] bitmapPair, int step)
+        {
+            if ( ! lock_.tryLock())
+            {
+                return null;
+            }
+            try
+            {
+                return colorizePass(bitmapPair, step, false);
+            }
+            finally
+            {
+                lock_.unlock();
+            }
+        }
+
+        /**
+         * Work out the palette codes of just the given points of the full scale, then color it into the bitmap not on
+         * screen.
+         *
+         * A deepening pass only changes the points that escaped, usually a small fraction of the level, so the rest
+         * keep their codes.  If the palette, offset and clamp are also unchanged since the last pass, so do their
+         * colors, and only the given points are colored.
+         *
+         * Intended to be called from the job thread, after deepening.
+         *
+         * @param bitmapPair The pair of full scale bitmaps to draw into.
+         * @param changedCoordinates The packed grid coordinates of the points whose iteration counts have changed.
+         * @return The one of the pair drawn into.
+         */
+        Bitmap colorizeChangedPoints(Bitmap[] bitmapPair, int[] changedCoordinates)
+        {
+            lock_.lock();
+            try
+            {
+                // The codes are of another scale, e.g. re-colored at a speculative hit's quarter scale
+                if (indexedStep_ != 1)
+                {
+                    return colorizePass(bitmapPair, 1, true);
+                }
+
+                final double smoothingTableScale = smoothingTableSize_ / (smoothingMaximumMagnitudeSquared_ - escapeValueSquared_);
+                for (int coordinates : changedCoordinates)
+                {
+                    final int gridX = coordinates >>> 16;
+                    final int gridY = coordinates & 0xffff;
+                    paletteCodeBuffer_[gridY * screenWidth_ + gridX] = paletteCode(gridX, gridY, smoothingTableScale);
+                }
+
+                final int[] lookupTable = paletteLookupTable_;
+                final int offset = paletteOffset_ % lookupTable.length;
+                final int clamp = displayIterationClamp_;
+                // The pixel buffer holds the last pass, which only differs at the changed points if it matches
+                if (passStep_ != 1 || lookupTable != passLookupTable_ || offset != passOffset_ || clamp != passClamp_)
+                {
+                    return colorizePass(bitmapPair, 1, false);
+                }
+
+                final int clampCode = clampCode(clamp);
+                for (int coordinates : changedCoordinates)
+                {
+                    final int pixelIndex = (coordinates & 0xffff) * screenWidth_ + (coordinates >>> 16);
+                    final int code = paletteCodeBuffer_[pixelIndex];
+                    pixelBuffer_[pixelIndex] = (code < 0 || code >= clampCode) ? insideColor_ : lookupTable[(code + offset) & paletteIndexMask_];
+                }
+                return copyPixels(bitmapPair);
+            }
+            finally
+            {
+                lock_.unlock();
+            }
+        }
+
+        /**
+         * Color the iteration count array into the pixel buffer, in parallel, then copy it into the bitmap not on screen.
+         *
+         * The job thread's pass is run as one of its passes, the UI thread's as a priority pass, so it is not held up by
+         * a calculation pass in progress.
+         *
+         * NOTE - only called with the lock held, so only one pass runs at a time.
+         *
+         * @param bitmapPair The pair of bitmaps to draw into, needs to match the step size.
+         * @param step The step to use when iterating across and down the iteration count array.
+         * @param reindex Whether the iteration counts have changed since the last pass, e.g. not when only recoloring.
+         * @return The one of the pair drawn into.
+         */
+        private Bitmap colorizePass(Bitmap[] bitmapPair, int step, boolean reindex)
+        {
+            passReindex_ = reindex || step != indexedStep_;
+            indexedStep_ = step;
+            passStep_ = step;
+            passWidth_ = bitmapPair[0].getWidth();
+            passHeight_ = bitmapPair[0].getHeight();
+            passLookupTable_ = paletteLookupTable_;
+            passOffset_ = paletteOffset_ % passLookupTable_.length;
+            passClamp_ = displayIterationClamp_;
+
+            if (Thread.currentThread() == jobThread_)
+            {
+                renderScheduler_.runPass(bandPass_, 0);
+            }
+            else
+            {
+                renderScheduler_.runPriorityPass(bandPass_);
+            }
+            return copyPixels(bitmapPair);
+        }
+
+        /**
+         * Copy the pixel buffer into whichever of the pair of bitmaps is not on screen.
+         *
+         * NOTE - the UI thread only swaps in a bitmap it colored itself, or one the job thread colored earlier, while
+         * holding the lock, so the one not on screen cannot change under us.
+         *
+         * @param bitmapPair The pair of bitmaps, of the size of the last pass.
+         * @return The one of the pair copied into.
+         */
+        private Bitmap copyPixels(Bitmap[] bitmapPair)
+        {
+            final Bitmap offscreenBitmap = (bitmapPair[0] == renderBitmap_) ? bitmapPair[1] : bitmapPair[0];
+            offscreenBitmap.setPixels(pixelBuffer_, 0, passWidth_, 0, 0, passWidth_, passHeight_);
+            return offscreenBitmap;
+        }
+
+        /**
+         * Color one band of rows of the current pass into the pixel buffer.
+         *
+         * @param band The band of rows to color.
+         */
+        private void colorizeBand(int band)
+        {
+            final int firstRow = band * passHeight_ / numberOfBands_;
+            final int lastRow = (band + 1) * passHeight_ / numberOfBands_;
+            if (passReindex_)
+            {
+                indexBand(firstRow, lastRow);
+            }
+
+            final int[] lookupTable = passLookupTable_;
+            final int offset = passOffset_;
+            final int clampCode = clampCode(passClamp_);
+            final int lastPixel = lastRow * passWidth_;
+            for (int pixelIndex = firstRow * passWidth_; pixelIndex < lastPixel; ++pixelIndex)
+            {
+                final int code = paletteCodeBuffer_[pixelIndex];
+                pixelBuffer_[pixelIndex] = (code < 0 || code >= clampCode) ? insideColor_ : lookupTable[(code + offset) & paletteIndexMask_];
+            }
+        }
+
+        /**
+         * Work out the palette codes of one band of rows of the current pass, from the iteration count array.
+         *
+         * The iteration count array is by column, so the band is walked in blocks of columns, reading down each column
+         * of the block together, rather than across whole rows, which would miss the cache on nearly every read.
+         *
+         * @param firstRow The first row of the band.
+         * @param lastRow The row after the last row of the band.
+         */
+        private void indexBand(int firstRow, int lastRow)
+        {
+            final int step = passStep_;
+            final int bitmapWidth = passWidth_;
+            final double smoothingTableScale = smoothingTableSize_ / (smoothingMaximumMagnitudeSquared_ - escapeValueSquared_);
+
+            for (int blockX = 0; blockX < bitmapWidth; blockX += colorizeBlockWidth_)
+            {
+                final int blockEnd = Math.min(bitmapWidth, blockX + colorizeBlockWidth_);
+                for (int bitmapY = firstRow; bitmapY < lastRow; ++bitmapY)
                 {
-                    // TODO - ensure the iteration count array never stores more than maximum expected iterations.
-                    iterations = iterations < maximumTestIterations_ ? iterations : maximumTestIterations_;
-                    int index = iterations % paletteSize_;
-                    offscreenCanvas.drawPoint(bitmapX, bitmapY, paintArray_.get(index));
+                    final int gridY = bitmapY * step;
+                    int pixelIndex = bitmapY * bitmapWidth + blockX;
+                    for (int bitmapX = blockX; bitmapX < blockEnd; ++bitmapX, ++pixelIndex)
+                    {
+                        paletteCodeBuffer_[pixelIndex] = paletteCode(bitmapX * step, gridY, smoothingTableScale);
+                    }
                 }
             }
         }
+
+        /**
+         * @param gridX The x offset into the iteration count array
+         * @param gridY The y offset into the iteration count array
+         * @param smoothingTableScale Maps |z|^2 above the escape value onto the smoothing table.
+         * @return The palette code of the point, -1 if it is inside the set, or may be.
+         */
+        private int paletteCode(int gridX, int gridY, double smoothingTableScale)
+        {
+            final int iterations = iterationArray_[gridX][gridY];
+            // Inside the set, or not yet escaped
+            if (iterations < 0)
+            {
+                return -1;
+            }
+            int smoothingIndex = (int) ((magnitudeArray_[gridX][gridY] - escapeValueSquared_) * smoothingTableScale);
+            smoothingIndex = smoothingIndex < 0 ? 0 : (smoothingIndex > smoothingTableSize_ ? smoothingTableSize_ : smoothingIndex);
+            // The smoothed count can be just below zero, for points that escape at once, the mask wraps it.
+            final int paletteIndex = (int) Math.floor((iterations + smoothingTable_[smoothingIndex]) * paletteSubdivisions_) & paletteIndexMask_;
+            return (iterations << paletteIndexBits_) | paletteIndex;
+        }
+
+        /**
+         * @param clamp The display iteration clamp.
+         * @return The lowest palette code beyond the clamp, as the palette index never carries into the iteration count.
+         */
+        private int clampCode(int clamp)
+        {
+            return (clamp > (Integer.MAX_VALUE >> paletteIndexBits_)) ? Integer.MAX_VALUE : clamp << paletteIndexBits_;
+        }
     }
 
 
@@ -738,8 +3140,80 @@ public class MandelbrotView extends View
     @Override
     protected void onDraw(Canvas canvas)
     {
-        // Simply copy over the latest bitmap that we have rendered off screen.
-        canvas.drawBitmap(renderBitmap_, 0, 0, canvasPaint);
+        // Simply copy over the latest bitmap that we have rendered off screen, scaling it up to the screen size.
+        canvas.drawBitmap(renderBitmap_, null, screenRect_, canvasPaint);
+    }
+
+
+    /**
+     * Called when the user presses a key, e.g. on the FireStick remote.
+     *
+     * We respond to play/pause by starting or stopping the color cycling.
+     *
+     * @param keyCode The key that was pressed
+     * @param e The event that occurred
+     * @return True if we handled the event.
+     */
+    @Override
+    public boolean onKeyDown(int keyCode, KeyEvent e)
+    {
+        if (keyCode == KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE)
+        {
+            setColorCycling( ! colorCycling_);
+            return true;
+        }
+        return super.onKeyDown(keyCode, e);
+    }
+
+
+    /**
+     * Calculate the real and imaginary ranges of the next zoom level, zooming by a factor of two at the given pixel.
+     *
+     * NOTE - used by both onTouchEvent and the speculative renderer, so a speculative hit matches exactly.
+     *
+     * @param pixelX The screen position to zoom at.
+     * @param pixelY The screen position to zoom at.
+     * @param zoomedRanges Filled with the minimum and maximum real, then minimum and maximum imaginary, range values.
+     */
+    private void calculateZoomedRanges(float pixelX, float pixelY, double[] zoomedRanges)
+    {
+        // Zoom at whole pixels, so a viewport aligned with its conjugate about the real axis stays aligned
+        pixelX = Math.round(pixelX);
+        pixelY = Math.round(pixelY);
+
+        // Find the real and imaginary value at this pixel
+        double realPixelIncrement = (maximumRealRange_ - minimumRealRange_) / (screenWidth_ - 1);
+        double imaginaryPixelIncrement = (maximumImaginaryRange_ - minimumImaginaryRange_) / (screenHeight_ - 1);
+        double currentImaginary = maximumImaginaryRange_ - pixelY * imaginaryPixelIncrement;
+        double currentReal = minimumRealRange_ + pixelX * realPixelIncrement;
+
+        // Calculate the new real and imaginary range values
+        double previousRealRange = maximumRealRange_ - minimumRealRange_;
+        double previousImaginaryRange = maximumImaginaryRange_ - minimumImaginaryRange_;
+        double newRealRange = previousRealRange / 2.0;
+        double newImaginaryRange = previousImaginaryRange / 2.0;
+        zoomedRanges[0] = currentReal - newRealRange / 2.0;
+        zoomedRanges[1] = currentReal + newRealRange / 2.0;
+        zoomedRanges[2] = currentImaginary - newImaginaryRange / 2.0;
+        zoomedRanges[3] = currentImaginary + newImaginaryRange / 2.0;
+    }
+
+
+    /**
+     * @return The measurements of the latest completely calculated zoom level, or null if there is none yet.
+     */
+    public RenderMetrics getRenderMetrics()
+    {
+        return renderScheduler_.getLastFrameMetrics();
+    }
+
+
+    /**
+     * @return The fraction of zooms that used a speculatively rendered next level.
+     */
+    public float getSpeculativeHitRate()
+    {
+        return speculativeRenderer_.getHitRate();
     }
 
 
@@ -747,6 +3221,8 @@ public class MandelbrotView extends View
      * Called when the user performs a mouse/touch action inside the Mandelbrot view.
      *
      * We respond to a "click" by "zooming" the Mandelbrot set by a factor of two at the mouse/touch point.
+     * If the next level has been speculatively rendered for a point near there, we zoom at that point instead,
+     * and skip straight to the quarter scale.
      *
      * @param e The event that occurred
      * @return True if we handled the event.
@@ -759,28 +3235,52 @@ public class MandelbrotView extends View
         switch (e.getAction())
         {
             case MotionEvent.ACTION_DOWN:
-                // Find the real and imaginary value at this pixel
-                double realPixelIncrement = (maximumRealRange_ - minimumRealRange_) / (screenWidth_ - 1);
-                double imaginaryPixelIncrement = (maximumImaginaryRange_ - minimumImaginaryRange_) / (screenHeight_ - 1);
-                double currentImaginary = maximumImaginaryRange_ - touchY * imaginaryPixelIncrement;
-                double currentReal = minimumRealRange_ + touchX * realPixelIncrement;
-
-                // Calculate the new real and imaginary range values
-                double previousRealRange = maximumRealRange_ - minimumRealRange_;
-                double previousImaginaryRange = maximumImaginaryRange_ - minimumImaginaryRange_;
-                double newRealRange = previousRealRange / 2.0;
-                double newImaginaryRange = previousImaginaryRange / 2.0;
-                minimumRealRange_ = currentReal - newRealRange / 2.0;
-                maximumRealRange_ = currentReal + newRealRange / 2.0;;
-                minimumImaginaryRange_ = currentImaginary - newImaginaryRange / 2.0;
-                maximumImaginaryRange_ = currentImaginary + newImaginaryRange/ 2.0;
+                final SpeculativeResult speculativeHit = speculativeRenderer_.takeHit(currentZoomLevel_, touchX, touchY);
+                final double[] zoomedRanges = new double[4];
+                if (speculativeHit != null)
+                {
+                    calculateZoomedRanges(speculativeHit.pixelX_, speculativeHit.pixelY_, zoomedRanges);
+                }
+                else
+                {
+                    calculateZoomedRanges(touchX, touchY, zoomedRanges);
+                }
+                minimumRealRange_ = zoomedRanges[0];
+                maximumRealRange_ = zoomedRanges[1];
+                minimumImaginaryRange_ = zoomedRanges[2];
+                maximumImaginaryRange_ = zoomedRanges[3];
 
                 // TODO reuse portions of the previous iteration count values.
 
                 currentZoomLevel_++;
-                updateZoomLevel();
+                updateZoomLevel(speculativeHit);
                 break;
         }
         return true;
     }
+
+
+    /**
+     * Called when the mouse cursor moves over the Mandelbrot view, without a button pressed.
+     *
+     * We track the cursor, as it is the most likely next zoom target for the speculative renderer.
+     *
+     * @param e The event that occurred
+     * @return True if we handled the event.
+     */
+    @Override
+    public boolean onHoverEvent(MotionEvent e)
+    {
+        switch (e.getActionMasked())
+        {
+            case MotionEvent.ACTION_HOVER_ENTER:
+            case MotionEvent.ACTION_HOVER_MOVE:
+                hoverX_ = e.getX();
+                hoverY_ = e.getY();
+                // There may be a new target for the speculative renderer
+                LockSupport.unpark(jobThread_);
+                return true;
+        }
+        return super.onHoverEvent(e);
+    }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+
+/**
+ * A source of calculated tiles of the Mandelbrot set, used by the MandelbrotView to fill its iteration count array.
+ *
+ * The view calculates each level as a sequence of subsets, i.e. every eighth row and column from a starting offset.
+ * A source calculates one subset at a time, usually split into tiles of rows, and must have written every point of
+ * the subset into the view before returning, as the next subset may depend on them.
+ *
+ * The view has a local source, calculating on the device, and a remote source, offloading to a RenderServer.
+ */
+interface TileSource
+{
+    /**
+     * Calculate one subset of the current level into the view.
+     *
+     * @param startX The starting x offset into the iteration count array
+     * @param startY The starting y offset into the iteration count array
+     * @param startingZoomLevel The zoom level at the time when the calculation job was created.
+     * @param checkForAbort Whether we check for user interruption to stop calculating.
+     * @param useInterpolation Whether points may be interpolated from their four neighbours.
+     */
+    void calculateSubset(int startX, int startY, int startingZoomLevel, boolean checkForAbort, boolean useInterpolation);
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * A small desktop render server, that calculates tiles of the Mandelbrot set for the remote tile source of the
+ * MandelbrotView, using the TileProtocol.
+ *
+ * A desktop on the same LAN calculates a full frame in well under a second, rather than the FireStick's thirty.
+ *
+ * Each connection has a thread reading its requests, which are calculated on a shared pool of one thread per
+ * processor.  Each result is written back as soon as its tile is finished.
+ *
+ * NOTE - this class is only built by the server Gradle module, it shares the protocol and kernel with the app
+ * through the shared module.
+ *
+ * Usage: java com.github.roddunne.mandelbrot.RenderServer [port]
+ */
+public class RenderServer
+{
+    private final ServerSocket serverSocket_;
+    private final ExecutorService tilePool_;
+
+
+    /**
+     * Entry point for running the server from the command line.
+     *
+     * @param args Optionally, the port to listen on.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : TileProtocol.DEFAULT_PORT;
+        final RenderServer server = new RenderServer(port, Runtime.getRuntime().availableProcessors());
+        System.out.println("Mandelbrot render server listening on port " + server.getPort());
+        server.serve();
+    }
+
+
+    /**
+     * Constructor, binds the server socket.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @param threads The number of tiles to calculate at once.
+     */
+    public RenderServer(int port, int threads) throws IOException
+    {
+        serverSocket_ = new ServerSocket(port);
+        tilePool_ = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort()
+    {
+        return serverSocket_.getLocalPort();
+    }
+
+
+    /**
+     * Accept connections until the server is closed.
+     */
+    public void serve() throws IOException
+    {
+        while (!serverSocket_.isClosed())
+        {
+            final Socket socket;
+            try
+            {
+                socket = serverSocket_.accept();
+            }
+            catch (SocketException e)
+            {
+                // Closed while waiting to accept
+                break;
+            }
+
+            new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    serveConnection(socket);
+                }
+            }, "render-connection").start();
+        }
+    }
+
+
+    /**
+     * Stop accepting connections and calculating tiles.
+     */
+    public void close() throws IOException
+    {
+        serverSocket_.close();
+        tilePool_.shutdownNow();
+    }
+
+
+    /**
+     * Read requests from one connection until it is closed, calculating each on the pool.
+     *
+     * @param socket The connection.
+     */
+    private void serveConnection(final Socket socket)
+    {
+        try
+        {
+            socket.setTcpNoDelay(true);
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            while (true)
+            {
+                final TileProtocol.TileRequest request;
+                try
+                {
+                    request = TileProtocol.readRequest(in);
+                }
+                catch (EOFException e)
+                {
+                    break;
+                }
+
+                tilePool_.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        final TileProtocol.TileResult result = calculateTile(request);
+                        try
+                        {
+                            // Results from the pool threads are interleaved, so write each one whole.
+                            synchronized (out)
+                            {
+                                TileProtocol.writeResult(out, result);
+                                out.flush();
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            closeQuietly(socket);
+                        }
+                    }
+                });
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.println("Render connection failed: " + e.getMessage());
+        }
+        finally
+        {
+            // NOTE any tiles still calculating will fail to write, and be dropped.
+            closeQuietly(socket);
+        }
+    }
+
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // Nothing more to do
+        }
+    }
+
+
+    /**
+     * Calculate every point of a tile.
+     *
+     * The same escape time kernel, and the same periodicity test policy, as the MandelbrotView's first pass of each
+     * level, i.e. only testing a point if the previous point of the row was inside the set.  But with no interpolation,
+     * as the server does not have the neighbouring points.
+     *
+     * @param request The tile to calculate.
+     * @return The calculated tile.
+     */
+    static TileProtocol.TileResult calculateTile(TileProtocol.TileRequest request)
+    {
+        final int columns = request.columns();
+        final int rows = request.rows();
+        final TileProtocol.TileResult result = new TileProtocol.TileResult(request.requestId_, columns * rows, columns * rows);
+        final double realPixelIncrement = (request.maximumRealRange_ - request.minimumRealRange_) / (request.screenWidth_ - 1);
+        final double imaginaryPixelIncrement = (request.maximumImaginaryRange_ - request.minimumImaginaryRange_) / (request.screenHeight_ - 1);
+        final EscapeKernel kernel = new EscapeKernel();
+
+        int index = 0;
+        for (int gridY = request.firstGridY_; gridY < request.lastGridY_; gridY += request.step_)
+        {
+            final double currentImaginary = request.maximumImaginaryRange_ - gridY * imaginaryPixelIncrement;
+            boolean previousPixelWasInsideTheSet = false;
+            for (int gridX = request.startX_; gridX < request.screenWidth_; gridX += request.step_, ++index)
+            {
+                final double currentReal = request.minimumRealRange_ + gridX * realPixelIncrement;
+                kernel.start(currentReal, currentImaginary);
+                final int outcome = kernel.iterate(request.budget_, previousPixelWasInsideTheSet);
+                if (outcome == EscapeKernel.ESCAPED)
+                {
+                    previousPixelWasInsideTheSet = false;
+                    result.iterations_[index] = kernel.iterations_;
+                    result.magnitudes_[index] = (float) kernel.magnitudeSquared_;
+                }
+                else
+                {
+                    previousPixelWasInsideTheSet = true;
+                    result.iterations_[index] = -1;
+                    if (outcome == EscapeKernel.UNRESOLVED)
+                    {
+                        result.addUnresolved(index, kernel);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests of the RenderServer, running in process on an ephemeral localhost port, through the TileClient.
+ *
+ * The results are checked against a plain escape time calculation written out here, rather than the shared kernel,
+ * so a change to the kernel that alters the results is caught.
+ */
+public class RenderServerTest
+{
+    // A small screen over the starting view, so there are plenty of points on the boundary
+    private final static int screenWidth_ = 240;
+    private final static int screenHeight_ = 135;
+    private final static int step_ = 2;
+    private final static int tileRows_ = 8;
+    private final static int budget_ = 256;
+
+    private RenderServer server_;
+    private TileClient client_;
+
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server_ = new RenderServer(0, 4);
+        new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    server_.serve();
+                }
+                catch (IOException e)
+                {
+                    // The test fails on the client side
+                }
+            }
+        }, "test-render-server").start();
+        client_ = new TileClient("127.0.0.1", server_.getPort(), 1000, 5000, 0L);
+    }
+
+
+    @After
+    public void tearDown() throws IOException
+    {
+        client_.close();
+        server_.close();
+    }
+
+
+    /**
+     * Stream every tile of a subset, and check each point, whatever order the results arrive in.
+     */
+    @Test
+    public void tilesMatchLocalCalculation()
+    {
+        final TileProtocol.TileRequest[] requests = createSubsetRequests(1, 1, budget_);
+        final TileProtocol.TileResult[] results = new TileProtocol.TileResult[requests.length];
+        final boolean[] received = new boolean[requests.length];
+
+        assertTrue(client_.requestTiles(requests, received, new TileClient.TileListener()
+        {
+            @Override
+            public void onTileResult(int tile, TileProtocol.TileResult result)
+            {
+                assertEquals(null, results[tile]);
+                results[tile] = result;
+            }
+        }));
+
+        int unresolvedPoints = 0;
+        for (int tile = 0; tile < requests.length; ++tile)
+        {
+            assertTrue(received[tile]);
+            assertEquals(requests[tile].requestId_, results[tile].requestId_);
+            checkTile(requests[tile], results[tile]);
+            unresolvedPoints += results[tile].unresolvedCount_;
+        }
+        // Otherwise the unresolved state was not tested
+        assertTrue(unresolvedPoints > 0);
+    }
+
+
+    /**
+     * The unresolved points of a tile resume, with their z and periodicity test state, to the same results as
+     * calculating them from scratch with a larger budget.
+     */
+    @Test
+    public void unresolvedPointsResumeToTheSameResults()
+    {
+        final TileProtocol.TileRequest request = createSubsetRequests(0, 0, budget_)[0];
+        final TileProtocol.TileResult result = RenderServer.calculateTile(request);
+        final EscapeKernel kernel = new EscapeKernel();
+        final int deeperBudget = budget_ * 16;
+
+        int resolvedByDeepening = 0;
+        for (int unresolved = 0; unresolved < result.unresolvedCount_; ++unresolved)
+        {
+            final int pointIndex = result.unresolvedIndices_[unresolved];
+            final double real = realOf(request, pointIndex);
+            final double imaginary = imaginaryOf(request, pointIndex);
+            kernel.resume(real, imaginary, result.unresolvedRealZ_[unresolved], result.unresolvedImaginaryZ_[unresolved],
+                    result.unresolvedIterations_[unresolved], result.unresolvedRealPeriodicityTestValue_[unresolved],
+                    result.unresolvedImaginaryPeriodicityTestValue_[unresolved], result.unresolvedPeriodicityTestCount_[unresolved],
+                    result.unresolvedMaximumAttemptsToFindRepeats_[unresolved]);
+
+            final int outcome = kernel.iterate(deeperBudget, true);
+            final int expected = escapeIterations(real, imaginary, deeperBudget);
+            if (outcome == EscapeKernel.ESCAPED)
+            {
+                assertEquals(expected, kernel.iterations_);
+                resolvedByDeepening++;
+            }
+            else
+            {
+                assertEquals(-1, expected);
+                if (outcome == EscapeKernel.PROVEN_INSIDE)
+                {
+                    resolvedByDeepening++;
+                }
+            }
+        }
+        assertTrue(resolvedByDeepening > 0);
+    }
+
+
+    /**
+     * A closed server calculates no more tiles, so the caller falls back for all of them.
+     *
+     * NOTE - the batch is checked rather than the connection, a connection to a closed local port can occasionally
+     * succeed, by connecting to itself.
+     */
+    @Test
+    public void closedServerCalculatesNoTiles() throws IOException
+    {
+        server_.close();
+        final TileProtocol.TileRequest[] requests = createSubsetRequests(0, 0, budget_);
+        final boolean[] received = new boolean[requests.length];
+        assertFalse(client_.requestTiles(requests, received, new TileClient.TileListener()
+        {
+            @Override
+            public void onTileResult(int tile, TileProtocol.TileResult result)
+            {
+                fail("Unexpected tile result " + tile);
+            }
+        }));
+        for (boolean tileReceived : received)
+        {
+            assertFalse(tileReceived);
+        }
+        assertNotNull(client_.takeFailure());
+    }
+
+
+    /**
+     * Create the requests for one subset of the small screen, a tile of rows each.
+     */
+    static TileProtocol.TileRequest[] createSubsetRequests(int startX, int startY, int budget)
+    {
+        final int rows = (screenHeight_ - startY + step_ - 1) / step_;
+        final int tileCount = (rows + tileRows_ - 1) / tileRows_;
+        final TileProtocol.TileRequest[] requests = new TileProtocol.TileRequest[tileCount];
+        for (int tile = 0; tile < tileCount; ++tile)
+        {
+            final TileProtocol.TileRequest request = new TileProtocol.TileRequest();
+            request.requestId_ = tile;
+            request.minimumRealRange_ = -2.2;
+            request.maximumRealRange_ = 0.8;
+            request.minimumImaginaryRange_ = -1.2;
+            request.maximumImaginaryRange_ = 1.2;
+            request.screenWidth_ = screenWidth_;
+            request.screenHeight_ = screenHeight_;
+            request.startX_ = startX;
+            request.step_ = step_;
+            request.firstGridY_ = startY + tile * tileRows_ * step_;
+            request.lastGridY_ = Math.min(screenHeight_, request.firstGridY_ + tileRows_ * step_);
+            request.budget_ = budget;
+            requests[tile] = request;
+        }
+        return requests;
+    }
+
+
+    /**
+     * Check every point of a tile against the plain calculation, and every unresolved point's z by replaying it.
+     */
+    static void checkTile(TileProtocol.TileRequest request, TileProtocol.TileResult result)
+    {
+        final int pointCount = request.columns() * request.rows();
+        assertEquals(pointCount, result.iterations_.length);
+
+        for (int index = 0; index < result.unresolvedCount_; ++index)
+        {
+            final int pointIndex = result.unresolvedIndices_[index];
+            assertEquals(-1, result.iterations_[pointIndex]);
+            assertEquals(request.budget_, result.unresolvedIterations_[index]);
+
+            final double[] z = iterate(realOf(request, pointIndex), imaginaryOf(request, pointIndex), request.budget_);
+            assertEquals(z[0], result.unresolvedRealZ_[index], 0.0);
+            assertEquals(z[1], result.unresolvedImaginaryZ_[index], 0.0);
+        }
+
+        for (int pointIndex = 0; pointIndex < pointCount; ++pointIndex)
+        {
+            final double real = realOf(request, pointIndex);
+            final double imaginary = imaginaryOf(request, pointIndex);
+            final int expected = escapeIterations(real, imaginary, request.budget_);
+            assertEquals("point " + pointIndex, expected, result.iterations_[pointIndex]);
+            if (expected >= 0)
+            {
+                final double[] z = iterate(real, imaginary, expected);
+                assertEquals((float) (z[0] * z[0] + z[1] * z[1]), result.magnitudes_[pointIndex], 0.0f);
+            }
+        }
+    }
+
+
+    private static double realOf(TileProtocol.TileRequest request, int pointIndex)
+    {
+        final int gridX = request.startX_ + (pointIndex % request.columns()) * request.step_;
+        final double realPixelIncrement = (request.maximumRealRange_ - request.minimumRealRange_) / (request.screenWidth_ - 1);
+        return request.minimumRealRange_ + gridX * realPixelIncrement;
+    }
+
+
+    private static double imaginaryOf(TileProtocol.TileRequest request, int pointIndex)
+    {
+        final int gridY = request.firstGridY_ + (pointIndex / request.columns()) * request.step_;
+        final double imaginaryPixelIncrement = (request.maximumImaginaryRange_ - request.minimumImaginaryRange_) / (request.screenHeight_ - 1);
+        return request.maximumImaginaryRange_ - gridY * imaginaryPixelIncrement;
+    }
+
+
+    /**
+     * @return The iterations for the point to escape, or -1 if it does not within the budget.
+     */
+    private static int escapeIterations(double real, double imaginary, int budget)
+    {
+        double realZ = real;
+        double imaginaryZ = imaginary;
+        for (int iterations = 0; iterations < budget; ++iterations)
+        {
+            final double realZSquared = realZ * realZ;
+            final double imaginaryZSquared = imaginaryZ * imaginaryZ;
+            if (realZSquared + imaginaryZSquared > EscapeKernel.ESCAPE_VALUE_SQUARED)
+            {
+                return iterations;
+            }
+            imaginaryZ = 2 * realZ * imaginaryZ + imaginary;
+            realZ = realZSquared - imaginaryZSquared + real;
+        }
+        return -1;
+    }
+
+
+    /**
+     * @return z after the given number of iterations, as real then imaginary.
+     */
+    private static double[] iterate(double real, double imaginary, int iterations)
+    {
+        double realZ = real;
+        double imaginaryZ = imaginary;
+        for (int n = 0; n < iterations; ++n)
+        {
+            final double realZSquared = realZ * realZ;
+            final double imaginaryZSquared = imaginaryZ * imaginaryZ;
+            imaginaryZ = 2 * realZ * imaginaryZ + imaginary;
+            realZ = realZSquared - imaginaryZSquared + real;
+        }
+        return new double[]{ realZ, imaginaryZ };
+    }
+}
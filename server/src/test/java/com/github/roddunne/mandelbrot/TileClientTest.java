@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests of the TileClient against fake servers, which misbehave in the ways a real one on the network can, i.e. reply
+ * out of order, stall, drop the connection part way through a batch, or not be there at all.
+ *
+ * The MandelbrotView falls back to calculating locally every tile the client does not report as received, so these
+ * check that the client reports exactly the tiles that arrived, and does not keep trying a failed server.
+ */
+public class TileClientTest
+{
+    private final static int connectTimeoutMillis_ = 1000;
+    private final static int readTimeoutMillis_ = 300;
+    private final static long neverRetryNanos_ = 60L * 1000 * 1000 * 1000;
+    private final static int budget_ = 256;
+
+    private FakeServer server_;
+    private TileClient client_;
+
+
+    @After
+    public void tearDown() throws IOException
+    {
+        if (client_ != null)
+        {
+            client_.close();
+        }
+        if (server_ != null)
+        {
+            server_.close();
+        }
+    }
+
+
+    /**
+     * Results in the reverse order of the requests are all handed on, each for the right tile.
+     */
+    @Test
+    public void outOfOrderResultsAreAllReceived() throws IOException
+    {
+        server_ = new FakeServer(FakeServer.REPLY_REVERSED);
+        client_ = new TileClient("127.0.0.1", server_.getPort(), connectTimeoutMillis_, readTimeoutMillis_, neverRetryNanos_);
+
+        final TileProtocol.TileRequest[] requests = RenderServerTest.createSubsetRequests(0, 0, budget_);
+        final boolean[] received = new boolean[requests.length];
+        final List<Integer> order = new ArrayList<Integer>();
+        assertTrue(client_.requestTiles(requests, received, new TileClient.TileListener()
+        {
+            @Override
+            public void onTileResult(int tile, TileProtocol.TileResult result)
+            {
+                order.add(tile);
+                RenderServerTest.checkTile(requests[tile], result);
+            }
+        }));
+
+        assertEquals(requests.length, order.size());
+        for (int count = 0; count < requests.length; ++count)
+        {
+            assertTrue(received[count]);
+            assertEquals(requests.length - 1 - count, (int) order.get(count));
+        }
+        assertNull(client_.takeFailure());
+    }
+
+
+    /**
+     * A server that accepts the batch but never replies times out, and is not tried again until the retry time.
+     */
+    @Test
+    public void stalledServerTimesOut() throws IOException
+    {
+        server_ = new FakeServer(FakeServer.STALL);
+        client_ = new TileClient("127.0.0.1", server_.getPort(), connectTimeoutMillis_, readTimeoutMillis_, neverRetryNanos_);
+
+        final TileProtocol.TileRequest[] requests = RenderServerTest.createSubsetRequests(0, 0, budget_);
+        final boolean[] received = new boolean[requests.length];
+        final long startTime = System.nanoTime();
+        assertFalse(client_.requestTiles(requests, received, new FailingListener()));
+        final long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+
+        assertTrue(elapsedMillis >= readTimeoutMillis_ / 2);
+        for (boolean tileReceived : received)
+        {
+            assertFalse(tileReceived);
+        }
+        assertNotNull(client_.takeFailure());
+
+        // Waiting to retry, so the next batch falls straight back without connecting
+        assertFalse(client_.requestTiles(requests, new boolean[requests.length], new FailingListener()));
+        assertNull(client_.takeFailure());
+        assertEquals(1, server_.getConnections());
+    }
+
+
+    /**
+     * A server that drops the connection part way through a batch leaves only the tiles it replied to received.
+     */
+    @Test
+    public void droppedConnectionReportsTheReceivedTiles() throws IOException
+    {
+        final int replies = 3;
+        server_ = new FakeServer(replies);
+        client_ = new TileClient("127.0.0.1", server_.getPort(), connectTimeoutMillis_, readTimeoutMillis_, neverRetryNanos_);
+
+        final TileProtocol.TileRequest[] requests = RenderServerTest.createSubsetRequests(0, 0, budget_);
+        assertTrue(requests.length > replies);
+        final boolean[] received = new boolean[requests.length];
+        final int[] resultCount = new int[1];
+        assertFalse(client_.requestTiles(requests, received, new TileClient.TileListener()
+        {
+            @Override
+            public void onTileResult(int tile, TileProtocol.TileResult result)
+            {
+                resultCount[0]++;
+            }
+        }));
+
+        assertEquals(replies, resultCount[0]);
+        for (int tile = 0; tile < requests.length; ++tile)
+        {
+            assertEquals(tile < replies, received[tile]);
+        }
+        assertNotNull(client_.takeFailure());
+    }
+
+
+    /**
+     * A server that is not there fails the batch, and is not tried again until the retry time.
+     *
+     * NOTE - the batch is checked rather than the connection, a connection to a closed local port can occasionally
+     * succeed, by connecting to itself.
+     */
+    @Test
+    public void unreachableServerFailsTheBatch() throws IOException
+    {
+        final ServerSocket unused = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        final int port = unused.getLocalPort();
+        unused.close();
+        client_ = new TileClient("127.0.0.1", port, connectTimeoutMillis_, readTimeoutMillis_, neverRetryNanos_);
+
+        final TileProtocol.TileRequest[] requests = RenderServerTest.createSubsetRequests(0, 0, budget_);
+        final boolean[] received = new boolean[requests.length];
+        assertFalse(client_.requestTiles(requests, received, new FailingListener()));
+        for (boolean tileReceived : received)
+        {
+            assertFalse(tileReceived);
+        }
+        assertNotNull(client_.takeFailure());
+        assertFalse(client_.connect());
+        assertNull(client_.takeFailure());
+    }
+
+
+    /**
+     * After a failure, the server is tried again once the retry time has passed.
+     */
+    @Test
+    public void failedServerIsRetriedAfterTheRetryTime() throws Exception
+    {
+        final long retryMillis = 200;
+        server_ = new FakeServer(0, FakeServer.REPLY_REVERSED);
+        client_ = new TileClient("127.0.0.1", server_.getPort(), connectTimeoutMillis_, readTimeoutMillis_, retryMillis * 1000000);
+
+        final TileProtocol.TileRequest[] requests = RenderServerTest.createSubsetRequests(0, 0, budget_);
+        assertFalse(client_.requestTiles(requests, new boolean[requests.length], new FailingListener()));
+        assertNotNull(client_.takeFailure());
+        assertFalse(client_.connect());
+
+        Thread.sleep(retryMillis + 50);
+        final boolean[] received = new boolean[requests.length];
+        assertTrue(client_.requestTiles(requests, received, new TileClient.TileListener()
+        {
+            @Override
+            public void onTileResult(int tile, TileProtocol.TileResult result)
+            {
+                RenderServerTest.checkTile(requests[tile], result);
+            }
+        }));
+        for (boolean tileReceived : received)
+        {
+            assertTrue(tileReceived);
+        }
+        assertEquals(2, server_.getConnections());
+    }
+
+
+    /**
+     * For batches that should not deliver any result.
+     */
+    private static class FailingListener implements TileClient.TileListener
+    {
+        @Override
+        public void onTileResult(int tile, TileProtocol.TileResult result)
+        {
+            throw new AssertionError("Unexpected tile result " + tile);
+        }
+    }
+
+
+    /**
+     * A fake render server, on an ephemeral localhost port, which handles one batch per connection as it is told to.
+     *
+     * The results are calculated by the real RenderServer, so only the delivery is fake.
+     */
+    private static class FakeServer implements Runnable
+    {
+        // Reply to every request of the batch, last first
+        final static int REPLY_REVERSED = -1;
+        // Read the batch, then never reply
+        final static int STALL = -2;
+
+        private final ServerSocket serverSocket_;
+        // What to do on each connection, otherwise the number of requests to reply to, in order, before closing
+        private final int[] behaviours_;
+        private final List<Socket> sockets_ = new ArrayList<Socket>();
+        private volatile int connections_ = 0;
+
+
+        FakeServer(int... behaviours) throws IOException
+        {
+            behaviours_ = behaviours;
+            serverSocket_ = new ServerSocket(0, 4, InetAddress.getByName("127.0.0.1"));
+            final Thread thread = new Thread(this, "fake-render-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+
+        int getPort()
+        {
+            return serverSocket_.getLocalPort();
+        }
+
+
+        int getConnections()
+        {
+            return connections_;
+        }
+
+
+        void close() throws IOException
+        {
+            serverSocket_.close();
+            synchronized (sockets_)
+            {
+                for (Socket socket : sockets_)
+                {
+                    socket.close();
+                }
+            }
+        }
+
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (int behaviour : behaviours_)
+                {
+                    final Socket socket = serverSocket_.accept();
+                    synchronized (sockets_)
+                    {
+                        sockets_.add(socket);
+                    }
+                    connections_++;
+                    handleBatch(socket, behaviour);
+                }
+            }
+            catch (IOException e)
+            {
+                // Closed by the test
+            }
+        }
+
+
+        private void handleBatch(Socket socket, int behaviour) throws IOException
+        {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            // Every batch in these tests is one subset of the test screen
+            final int batchSize = RenderServerTest.createSubsetRequests(0, 0, budget_).length;
+            final TileProtocol.TileRequest[] requests = new TileProtocol.TileRequest[batchSize];
+            for (int tile = 0; tile < batchSize; ++tile)
+            {
+                requests[tile] = TileProtocol.readRequest(in);
+            }
+
+            if (behaviour == STALL)
+            {
+                // Left open until the test closes it
+                return;
+            }
+            if (behaviour == REPLY_REVERSED)
+            {
+                for (int tile = batchSize - 1; tile >= 0; --tile)
+                {
+                    TileProtocol.writeResult(out, RenderServer.calculateTile(requests[tile]));
+                }
+                out.flush();
+                return;
+            }
+            for (int tile = 0; tile < behaviour; ++tile)
+            {
+                TileProtocol.writeResult(out, RenderServer.calculateTile(requests[tile]));
+            }
+            out.flush();
+            socket.close();
+        }
+    }
+}
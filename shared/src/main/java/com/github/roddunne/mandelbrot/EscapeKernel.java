@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+
+/**
+ * The escape time algorithm for a single point, shared by every calculation of the Mandelbrot set, i.e. the
+ * MandelbrotView's levels, deepening and speculative levels, and the RenderServer's tiles.  So the device and the
+ * server cannot drift apart.
+ *
+ * Iterates z = z^2 + c, starting from z = c, until |z|^2 passes the escape value, z repeats a saved value which proves
+ * the point is inside the set, or the iteration budget runs out.  The state of the point is kept in the kernel, so an
+ * unresolved point can be saved and resumed later with a larger budget, carrying on its periodicity test.
+ *
+ * Periodicity optimization.  If a point is in the set, the test will iterate to the budget without the values
+ * escaping.  But often the values enter a repeating cycle long before that.  The saved value is replaced after a
+ * doubling number of iterations (Brent's method), so cycles of any length are eventually found.  The caller decides
+ * whether to test each point, it only pays for itself for points likely to be inside the set.  Testing never changes
+ * the iteration count of an escaped point, only whether a point inside the set is proven so within the budget.
+ *
+ * NOTE - this class must not use any Android classes, it is in the shared module, which the desktop render server
+ * also depends on.
+ * NOTE - one instance per thread, it holds the state of the current point.
+ */
+final class EscapeKernel
+{
+    // The value of |z|^2 beyond which a point has escaped, i.e. an escape value of 2.0
+    static final double ESCAPE_VALUE_SQUARED = 4.0;
+
+    // The outcomes of iterate
+    static final int ESCAPED = 0;
+    static final int PROVEN_INSIDE = 1;
+    static final int UNRESOLVED = 2;
+
+    // The point being iterated, i.e. c
+    private double real_;
+    private double imaginary_;
+
+    // The state of the point, read by the caller after iterate
+    double realZ_;
+    double imaginaryZ_;
+    int iterations_;
+    // The final |z|^2 of an escaped point, used for smooth coloring
+    double magnitudeSquared_;
+    double realPeriodicityTestValue_;
+    double imaginaryPeriodicityTestValue_;
+    int periodicityTestCount_;
+    int maximumAttemptsToFindRepeats_;
+
+
+    /**
+     * Start a new point, with no iterations applied.
+     *
+     * @param real The real part of c
+     * @param imaginary The imaginary part of c
+     */
+    void start(double real, double imaginary)
+    {
+        resume(real, imaginary, real, imaginary, 0, 0.0, 0.0, 0, 1);
+    }
+
+
+    /**
+     * Resume a point that was left unresolved.
+     *
+     * @param real The real part of c
+     * @param imaginary The imaginary part of c
+     * @param realZ The real part of z after the given iterations
+     * @param imaginaryZ The imaginary part of z after the given iterations
+     * @param iterations The number of iterations already applied
+     * @param realPeriodicityTestValue The real part of the z value being tested for a repeat
+     * @param imaginaryPeriodicityTestValue The imaginary part of the z value being tested for a repeat
+     * @param periodicityTestCount The number of iterations tested against that value so far
+     * @param maximumAttemptsToFindRepeats The number of iterations to test against that value
+     */
+    void resume(double real, double imaginary, double realZ, double imaginaryZ, int iterations, double realPeriodicityTestValue,
+                double imaginaryPeriodicityTestValue, int periodicityTestCount, int maximumAttemptsToFindRepeats)
+    {
+        real_ = real;
+        imaginary_ = imaginary;
+        realZ_ = realZ;
+        imaginaryZ_ = imaginaryZ;
+        iterations_ = iterations;
+        magnitudeSquared_ = 0.0;
+        realPeriodicityTestValue_ = realPeriodicityTestValue;
+        imaginaryPeriodicityTestValue_ = imaginaryPeriodicityTestValue;
+        periodicityTestCount_ = periodicityTestCount;
+        maximumAttemptsToFindRepeats_ = maximumAttemptsToFindRepeats;
+    }
+
+
+    /**
+     * Iterate the current point until it escapes, is proven inside the set, or has had the budget of iterations.
+     *
+     * @param budget The total number of iterations to apply to the point, including those already applied.
+     * @param testPeriodicity Whether to test for a repeating cycle.
+     * @return ESCAPED, PROVEN_INSIDE or UNRESOLVED.
+     */
+    int iterate(int budget, boolean testPeriodicity)
+    {
+        // Work in locals, the fields are only written back at the end
+        final double real = real_;
+        final double imaginary = imaginary_;
+        double realZ = realZ_;
+        double imaginaryZ = imaginaryZ_;
+        double realPeriodicityTestValue = realPeriodicityTestValue_;
+        double imaginaryPeriodicityTestValue = imaginaryPeriodicityTestValue_;
+        int currentPeriodicityTestCount = periodicityTestCount_;
+        int maximumAttemptsToFindRepeats = maximumAttemptsToFindRepeats_;
+        int outcome = UNRESOLVED;
+
+        int iterations;
+        for (iterations = iterations_; iterations < budget; ++iterations)
+        {
+            // Use minimum multiplications per test iteration
+            final double realZSquared = realZ * realZ;
+            final double imaginaryZSquared = imaginaryZ * imaginaryZ;
+            final double magnitudeSquared = realZSquared + imaginaryZSquared;
+            if (magnitudeSquared > ESCAPE_VALUE_SQUARED)
+            {
+                magnitudeSquared_ = magnitudeSquared;
+                outcome = ESCAPED;
+                break;
+            }
+
+            // Calculate next test values
+            imaginaryZ = 2 * realZ * imaginaryZ + imaginary;
+            realZ = realZSquared - imaginaryZSquared + real;
+
+            if (testPeriodicity)
+            {
+                // NOTE comparison operator on floating point values actually works adequately here.
+                if (realZ == realPeriodicityTestValue && imaginaryZ == imaginaryPeriodicityTestValue)
+                {
+                    outcome = PROVEN_INSIDE;
+                    break;
+                }
+
+                // If we haven't found values that repeat yet, then double the number of steps before resetting the test values.
+                currentPeriodicityTestCount++;
+                if (currentPeriodicityTestCount > maximumAttemptsToFindRepeats)
+                {
+                    currentPeriodicityTestCount = 0;
+                    maximumAttemptsToFindRepeats *= 2;
+                    realPeriodicityTestValue = realZ;
+                    imaginaryPeriodicityTestValue = imaginaryZ;
+                }
+            }
+        }
+
+        realZ_ = realZ;
+        imaginaryZ_ = imaginaryZ;
+        iterations_ = iterations;
+        realPeriodicityTestValue_ = realPeriodicityTestValue;
+        imaginaryPeriodicityTestValue_ = imaginaryPeriodicityTestValue;
+        periodicityTestCount_ = currentPeriodicityTestCount;
+        maximumAttemptsToFindRepeats_ = maximumAttemptsToFindRepeats;
+        return outcome;
+    }
+}
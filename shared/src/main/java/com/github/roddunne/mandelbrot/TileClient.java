@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+
+/**
+ * The client end of the TileProtocol, used by the remote tile source of the MandelbrotView to talk to a RenderServer.
+ *
+ * All the tiles of a batch are requested at once, and each result is handed on as it arrives, in whatever order the
+ * server finishes them.  If the server cannot be reached, or fails or stalls part way through a batch, the connection
+ * is dropped and the caller is told which tiles did arrive, so it can calculate the rest itself.  The server is then
+ * not tried again until the retry time has passed, rather than on every batch.
+ *
+ * NOTE - this class must not use any Android classes, it is in the shared module, which the server module also
+ * depends on, for its tests.
+ * NOTE - only used from one thread, apart from close.
+ */
+final class TileClient
+{
+    /**
+     * Receives the results of a batch of tiles, as they arrive.
+     */
+    interface TileListener
+    {
+        /**
+         * @param tile The index of the tile in the batch.
+         * @param result The calculated tile.
+         */
+        void onTileResult(int tile, TileProtocol.TileResult result);
+    }
+
+    private final String host_;
+    private final int port_;
+    private final int connectTimeoutMillis_;
+    private final int readTimeoutMillis_;
+    private final long retryNanos_;
+
+    private volatile Socket socket_;
+    private volatile boolean closed_ = false;
+    private DataInputStream in_;
+    private DataOutputStream out_;
+    // Whether to wait until the retry time before connecting again, after a failure
+    private boolean waitingToRetry_ = false;
+    private long retryTime_;
+    // Request ids only need to be unique among the requests in flight, i.e. those of one batch
+    private int nextRequestId_ = 0;
+    // The reason for the latest failure, until it is taken
+    private String failure_ = null;
+
+
+    /**
+     * Constructor, the connection is made by the first batch.
+     *
+     * @param host The host name or address of the render server.
+     * @param port The port of the render server.
+     * @param connectTimeoutMillis How long to wait to connect.
+     * @param readTimeoutMillis How long to wait for the next result.
+     * @param retryNanos How long to wait after a failure before connecting again.
+     */
+    TileClient(String host, int port, int connectTimeoutMillis, int readTimeoutMillis, long retryNanos)
+    {
+        host_ = host;
+        port_ = port;
+        connectTimeoutMillis_ = connectTimeoutMillis;
+        readTimeoutMillis_ = readTimeoutMillis;
+        retryNanos_ = retryNanos;
+    }
+
+
+    /**
+     * Stop using the server, any batch in progress fails.
+     *
+     * May be called from any thread.
+     */
+    void close()
+    {
+        closed_ = true;
+        disconnect();
+    }
+
+
+    /**
+     * Connect to the server, unless already connected, or waiting to retry after a failure.
+     *
+     * @return Whether connected.
+     */
+    boolean connect()
+    {
+        if (socket_ != null)
+        {
+            return true;
+        }
+        if (closed_ || (waitingToRetry_ && System.nanoTime() - retryTime_ < 0))
+        {
+            return false;
+        }
+
+        final Socket socket = new Socket();
+        try
+        {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host_, port_), connectTimeoutMillis_);
+            socket.setSoTimeout(readTimeoutMillis_);
+            in_ = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out_ = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+        catch (IOException e)
+        {
+            closeQuietly(socket);
+            fail("Cannot connect to render server " + host_ + ":" + port_ + ": " + e.getMessage());
+            return false;
+        }
+
+        waitingToRetry_ = false;
+        socket_ = socket;
+        // Closed while connecting
+        if (closed_)
+        {
+            disconnect();
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Request a batch of tiles, and hand each result to the listener as it arrives.
+     *
+     * The request ids are assigned here.  Every result is read, even if the caller no longer wants them, to keep the
+     * stream in step.
+     *
+     * @param requests The tiles to calculate.
+     * @param received Set for each tile whose result was handed to the listener.
+     * @param listener Receives the results.
+     * @return Whether every tile was received.  If not, the connection has been dropped, see takeFailure.
+     */
+    boolean requestTiles(TileProtocol.TileRequest[] requests, boolean[] received, TileListener listener)
+    {
+        if (!connect())
+        {
+            return false;
+        }
+
+        final int firstRequestId = nextRequestId_;
+        nextRequestId_ += requests.length;
+        for (int tile = 0; tile < requests.length; ++tile)
+        {
+            requests[tile].requestId_ = firstRequestId + tile;
+        }
+
+        try
+        {
+            for (TileProtocol.TileRequest request : requests)
+            {
+                TileProtocol.writeRequest(out_, request);
+            }
+            out_.flush();
+
+            for (int count = 0; count < requests.length; ++count)
+            {
+                final int tile = TileProtocol.readResultId(in_) - firstRequestId;
+                if (tile < 0 || tile >= requests.length || received[tile])
+                {
+                    throw new IOException("Unexpected tile result " + (firstRequestId + tile));
+                }
+                final TileProtocol.TileResult result = TileProtocol.readResultBody(in_, requests[tile]);
+                received[tile] = true;
+                listener.onTileResult(tile, result);
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            disconnect();
+            fail("Render server " + host_ + ":" + port_ + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * @return The reason for the latest failure, or null if there has been none since the last call.
+     */
+    String takeFailure()
+    {
+        final String failure = failure_;
+        failure_ = null;
+        return failure;
+    }
+
+
+    private void fail(String failure)
+    {
+        failure_ = failure;
+        waitingToRetry_ = true;
+        retryTime_ = System.nanoTime() + retryNanos_;
+    }
+
+
+    private void disconnect()
+    {
+        final Socket socket = socket_;
+        socket_ = null;
+        if (socket != null)
+        {
+            closeQuietly(socket);
+        }
+    }
+
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            // Nothing more to do
+        }
+    }
+}
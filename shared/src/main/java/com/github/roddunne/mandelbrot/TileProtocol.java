@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2017 Rod Dunne
+ * All rights reserved
+ * This file is subject to the terms and conditions defined in file 'LICENSE', which is part of this source code package
+ */
+
+package com.github.roddunne.mandelbrot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * The binary protocol between the remote tile source of the MandelbrotView and the RenderServer.
+ *
+ * NOTE - this class must not use any Android classes, it is in the shared module, which the desktop render server
+ * also depends on.
+ *
+ * The client sends any number of tile requests down the socket, without waiting.  The server streams the results
+ * back as each tile finishes, so not necessarily in request order, tagged with the request id.
+ *
+ * A request is the magic number, then the request id, the viewport (minimum and maximum real, then minimum and
+ * maximum imaginary, values), the screen width and height, the starting x offset and step of the subset, the first
+ * row and the row after the last row of the tile, and the iteration budget.
+ *
+ * A result is the magic number, the request id, the uncompressed and compressed payload lengths, then the deflated
+ * payload.  The payload is the iteration count and final |z|^2 of every point of the tile, by row, with -1 for points
+ * that did not escape.  Then the number of unresolved points, i.e. those that did not escape but were not proven
+ * inside the set, and the point index, z, iterations applied and periodicity test state for each, so they can be
+ * deepened later exactly as if they had been calculated locally.
+ *
+ * All values are big endian, as written by DataOutputStream.
+ */
+final class TileProtocol
+{
+    // Marks the start of every request and result, to catch a client and server that have lost sync, or differ in version
+    static final int MAGIC = 0x4d425432;
+
+    // The port the render server listens on, unless told otherwise
+    static final int DEFAULT_PORT = 47474;
+
+    // Limits on the sizes read, so a corrupt stream cannot exhaust memory
+    private static final int maximumScreenSize_ = 8192;
+    private static final int maximumPayloadLength_ = 64 * 1024 * 1024;
+    // The payload bytes of each point, and of each unresolved point
+    private static final int pointLength_ = 8;
+    private static final int unresolvedPointLength_ = 48;
+
+
+    private TileProtocol()
+    {
+    }
+
+
+    /**
+     * A request for one tile, i.e. a range of rows of one subset of a level.
+     */
+    static final class TileRequest
+    {
+        int requestId_;
+        double minimumRealRange_;
+        double maximumRealRange_;
+        double minimumImaginaryRange_;
+        double maximumImaginaryRange_;
+        int screenWidth_;
+        int screenHeight_;
+        int startX_;
+        int step_;
+        int firstGridY_;
+        int lastGridY_;
+        int budget_;
+
+        int columns()
+        {
+            return (screenWidth_ - startX_ + step_ - 1) / step_;
+        }
+
+        int rows()
+        {
+            return (lastGridY_ - firstGridY_ + step_ - 1) / step_;
+        }
+    }
+
+
+    /**
+     * The calculated points of one tile, by row.
+     */
+    static final class TileResult
+    {
+        int requestId_;
+        int[] iterations_;
+        float[] magnitudes_;
+
+        // The unresolved points, index into the arrays above, z, the iterations applied and the periodicity test state
+        int unresolvedCount_;
+        int[] unresolvedIndices_;
+        double[] unresolvedRealZ_;
+        double[] unresolvedImaginaryZ_;
+        int[] unresolvedIterations_;
+        double[] unresolvedRealPeriodicityTestValue_;
+        double[] unresolvedImaginaryPeriodicityTestValue_;
+        int[] unresolvedPeriodicityTestCount_;
+        int[] unresolvedMaximumAttemptsToFindRepeats_;
+
+        TileResult(int requestId, int pointCount, int unresolvedCapacity)
+        {
+            requestId_ = requestId;
+            iterations_ = new int[pointCount];
+            magnitudes_ = new float[pointCount];
+            unresolvedIndices_ = new int[unresolvedCapacity];
+            unresolvedRealZ_ = new double[unresolvedCapacity];
+            unresolvedImaginaryZ_ = new double[unresolvedCapacity];
+            unresolvedIterations_ = new int[unresolvedCapacity];
+            unresolvedRealPeriodicityTestValue_ = new double[unresolvedCapacity];
+            unresolvedImaginaryPeriodicityTestValue_ = new double[unresolvedCapacity];
+            unresolvedPeriodicityTestCount_ = new int[unresolvedCapacity];
+            unresolvedMaximumAttemptsToFindRepeats_ = new int[unresolvedCapacity];
+        }
+
+        /**
+         * Append an unresolved point, with the state left in the kernel.
+         *
+         * @param index The index of the point in the tile.
+         * @param kernel The kernel that left the point unresolved.
+         */
+        void addUnresolved(int index, EscapeKernel kernel)
+        {
+            final int unresolved = unresolvedCount_++;
+            unresolvedIndices_[unresolved] = index;
+            unresolvedRealZ_[unresolved] = kernel.realZ_;
+            unresolvedImaginaryZ_[unresolved] = kernel.imaginaryZ_;
+            unresolvedIterations_[unresolved] = kernel.iterations_;
+            unresolvedRealPeriodicityTestValue_[unresolved] = kernel.realPeriodicityTestValue_;
+            unresolvedImaginaryPeriodicityTestValue_[unresolved] = kernel.imaginaryPeriodicityTestValue_;
+            unresolvedPeriodicityTestCount_[unresolved] = kernel.periodicityTestCount_;
+            unresolvedMaximumAttemptsToFindRepeats_[unresolved] = kernel.maximumAttemptsToFindRepeats_;
+        }
+    }
+
+
+    static void writeRequest(DataOutputStream out, TileRequest request) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(request.requestId_);
+        out.writeDouble(request.minimumRealRange_);
+        out.writeDouble(request.maximumRealRange_);
+        out.writeDouble(request.minimumImaginaryRange_);
+        out.writeDouble(request.maximumImaginaryRange_);
+        out.writeInt(request.screenWidth_);
+        out.writeInt(request.screenHeight_);
+        out.writeInt(request.startX_);
+        out.writeInt(request.step_);
+        out.writeInt(request.firstGridY_);
+        out.writeInt(request.lastGridY_);
+        out.writeInt(request.budget_);
+    }
+
+
+    /**
+     * @throws java.io.EOFException If the client has closed the connection between requests.
+     */
+    static TileRequest readRequest(DataInputStream in) throws IOException
+    {
+        checkMagic(in.readInt());
+
+        TileRequest request = new TileRequest();
+        request.requestId_ = in.readInt();
+        request.minimumRealRange_ = in.readDouble();
+        request.maximumRealRange_ = in.readDouble();
+        request.minimumImaginaryRange_ = in.readDouble();
+        request.maximumImaginaryRange_ = in.readDouble();
+        request.screenWidth_ = in.readInt();
+        request.screenHeight_ = in.readInt();
+        request.startX_ = in.readInt();
+        request.step_ = in.readInt();
+        request.firstGridY_ = in.readInt();
+        request.lastGridY_ = in.readInt();
+        request.budget_ = in.readInt();
+
+        if (request.screenWidth_ <= 0 || request.screenWidth_ > maximumScreenSize_
+                || request.screenHeight_ <= 0 || request.screenHeight_ > maximumScreenSize_
+                || request.step_ <= 0 || request.startX_ < 0 || request.startX_ >= request.screenWidth_
+                || request.firstGridY_ < 0 || request.lastGridY_ > request.screenHeight_ || request.firstGridY_ >= request.lastGridY_
+                || request.budget_ <= 0)
+        {
+            throw new IOException("Invalid tile request " + request.requestId_);
+        }
+        return request;
+    }
+
+
+    static void writeResult(DataOutputStream out, TileResult result) throws IOException
+    {
+        final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(result.iterations_.length * pointLength_);
+        final DataOutputStream payload = new DataOutputStream(payloadBytes);
+        for (int index = 0; index < result.iterations_.length; ++index)
+        {
+            payload.writeInt(result.iterations_[index]);
+            payload.writeFloat(result.magnitudes_[index]);
+        }
+        payload.writeInt(result.unresolvedCount_);
+        for (int index = 0; index < result.unresolvedCount_; ++index)
+        {
+            payload.writeInt(result.unresolvedIndices_[index]);
+            payload.writeDouble(result.unresolvedRealZ_[index]);
+            payload.writeDouble(result.unresolvedImaginaryZ_[index]);
+            payload.writeInt(result.unresolvedIterations_[index]);
+            payload.writeDouble(result.unresolvedRealPeriodicityTestValue_[index]);
+            payload.writeDouble(result.unresolvedImaginaryPeriodicityTestValue_[index]);
+            payload.writeInt(result.unresolvedPeriodicityTestCount_[index]);
+            payload.writeInt(result.unresolvedMaximumAttemptsToFindRepeats_[index]);
+        }
+        payload.flush();
+
+        // Iteration counts of neighbouring points are very similar, so even the fastest compression pays for itself.
+        final byte[] uncompressed = payloadBytes.toByteArray();
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(uncompressed);
+        deflater.finish();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(uncompressed.length / 4 + 64);
+        final byte[] buffer = new byte[8192];
+        while (!deflater.finished())
+        {
+            final int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+        deflater.end();
+
+        out.writeInt(MAGIC);
+        out.writeInt(result.requestId_);
+        out.writeInt(uncompressed.length);
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+    }
+
+
+    /**
+     * Read the start of the next result, the results arrive in the order the tiles finish.
+     *
+     * @param in The stream from the server.
+     * @return The request id of the result, the rest is read by readResultBody.
+     */
+    static int readResultId(DataInputStream in) throws IOException
+    {
+        checkMagic(in.readInt());
+        return in.readInt();
+    }
+
+
+    /**
+     * Read the rest of a result, after its request id.
+     *
+     * @param in The stream from the server.
+     * @param request The request the result is for, used to size and check it.
+     */
+    static TileResult readResultBody(DataInputStream in, TileRequest request) throws IOException
+    {
+        final int requestId = request.requestId_;
+        final int uncompressedLength = in.readInt();
+        final int compressedLength = in.readInt();
+        if (uncompressedLength < 0 || uncompressedLength > maximumPayloadLength_ || compressedLength < 0 || compressedLength > maximumPayloadLength_)
+        {
+            throw new IOException("Invalid tile result lengths " + uncompressedLength + ", " + compressedLength);
+        }
+
+        final byte[] compressed = new byte[compressedLength];
+        in.readFully(compressed);
+        final byte[] uncompressed = new byte[uncompressedLength];
+        final Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(compressed);
+            if (inflater.inflate(uncompressed) != uncompressedLength || !inflater.finished())
+            {
+                throw new IOException("Truncated tile result " + requestId);
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Corrupt tile result " + requestId, e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+
+        final int pointCount = request.columns() * request.rows();
+        final DataInputStream payload = new DataInputStream(new ByteArrayInputStream(uncompressed));
+        final int pointsLength = pointCount * pointLength_;
+        if (uncompressedLength < pointsLength + 4)
+        {
+            throw new IOException("Short tile result " + requestId);
+        }
+        payload.skipBytes(pointsLength);
+        final int unresolvedCount = payload.readInt();
+        if (unresolvedCount < 0 || unresolvedCount > pointCount || uncompressedLength != pointsLength + 4 + unresolvedCount * unresolvedPointLength_)
+        {
+            throw new IOException("Invalid unresolved count " + unresolvedCount + " in tile result " + requestId);
+        }
+
+        final TileResult result = new TileResult(requestId, pointCount, unresolvedCount);
+        final DataInputStream points = new DataInputStream(new ByteArrayInputStream(uncompressed));
+        for (int index = 0; index < pointCount; ++index)
+        {
+            result.iterations_[index] = points.readInt();
+            result.magnitudes_[index] = points.readFloat();
+        }
+        points.readInt();
+        result.unresolvedCount_ = unresolvedCount;
+        for (int index = 0; index < unresolvedCount; ++index)
+        {
+            final int pointIndex = points.readInt();
+            if (pointIndex < 0 || pointIndex >= pointCount)
+            {
+                throw new IOException("Invalid unresolved point " + pointIndex + " in tile result " + requestId);
+            }
+            result.unresolvedIndices_[index] = pointIndex;
+            result.unresolvedRealZ_[index] = points.readDouble();
+            result.unresolvedImaginaryZ_[index] = points.readDouble();
+            result.unresolvedIterations_[index] = points.readInt();
+            result.unresolvedRealPeriodicityTestValue_[index] = points.readDouble();
+            result.unresolvedImaginaryPeriodicityTestValue_[index] = points.readDouble();
+            result.unresolvedPeriodicityTestCount_[index] = points.readInt();
+            result.unresolvedMaximumAttemptsToFindRepeats_[index] = points.readInt();
+        }
+        return result;
+    }
+
+
+    private static void checkMagic(int magic) throws IOException
+    {
+        if (magic != MAGIC)
+        {
+            throw new IOException("Lost sync with the render protocol, read " + Integer.toHexString(magic));
+        }
+    }
+}